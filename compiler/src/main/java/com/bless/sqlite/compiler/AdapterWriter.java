@@ -0,0 +1,362 @@
+package com.bless.sqlite.compiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+import javax.annotation.processing.Filer;
+import javax.tools.JavaFileObject;
+
+/**
+ * 生成实体的 EntityAdapter 实现，绑定、读取规则与运行时 EntityBinder、EntityMapper 一致
+ */
+final class AdapterWriter {
+    private static final String ENTITY = "e";
+
+    private final EntityModel model;
+    private final StringBuilder sb = new StringBuilder();
+    private int indent;
+
+    AdapterWriter(EntityModel model) {
+        this.model = model;
+    }
+
+    void write(Filer filer) throws IOException {
+        String name = model.packageName.isEmpty() ? model.adapterName : model.packageName + "." + model.adapterName;
+        JavaFileObject file = filer.createSourceFile(name, model.type);
+        Writer writer = file.openWriter();
+        try {
+            writer.write(generate());
+        } finally {
+            writer.close();
+        }
+    }
+
+    String generate() {
+        String t = model.typeName;
+        line("// Generated by bless-sqlite compiler. Do not modify!");
+        if (!model.packageName.isEmpty()) {
+            line("package " + model.packageName + ";");
+            line("");
+        }
+        line("import android.database.Cursor;");
+        line("import android.database.sqlite.SQLiteProgram;");
+        line("");
+        line("import com.bless.sqlite.db.assit.EntityAdapter;");
+        line("import com.bless.sqlite.db.utils.DataUtil;");
+        line("");
+        line("import java.io.IOException;");
+        line("");
+        line("@SuppressWarnings(\"unchecked\")");
+        open("public final class " + model.adapterName + " implements EntityAdapter<" + t + ">");
+        writeColumns();
+        line("");
+        line("@Override");
+        open("public String getKeyColumn()");
+        line("return " + (model.key == null ? "null" : literal(model.key.column)) + ";");
+        close();
+        line("");
+        line("@Override");
+        open("public String[] getColumns()");
+        line("return COLUMNS;");
+        close();
+        line("");
+        line("@Override");
+        open("public String getKeyField()");
+        line("return " + (model.key == null ? "null" : literal(fieldId(model.key))) + ";");
+        close();
+        line("");
+        line("@Override");
+        open("public String[] getFields()");
+        line("return FIELDS;");
+        close();
+        line("");
+        line("@Override");
+        open("public " + t + " newInstance()");
+        line("return new " + t + "();");
+        close();
+        line("");
+        writeReadCursor(t);
+        line("");
+        writeBindColumn(t);
+        line("");
+        writeBindKey(t);
+        line("");
+        writeSetKeyValueIfNeed(t);
+        close();
+        return sb.toString();
+    }
+
+    private void writeColumns() {
+        StringBuilder cols = new StringBuilder();
+        StringBuilder fields = new StringBuilder();
+        List<ColumnModel> columns = model.columns;
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                cols.append(", ");
+                fields.append(", ");
+            }
+            cols.append(literal(columns.get(i).column));
+            fields.append(literal(fieldId(columns.get(i))));
+        }
+        line("private static final String[] COLUMNS = new String[]{" + cols + "};");
+        line("private static final String[] FIELDS = new String[]{" + fields + "};");
+    }
+
+    /**
+     * 属性标识：声明类(binary name)#属性名，同 EntityAdapter#getFields()
+     */
+    private static String fieldId(ColumnModel cm) {
+        return cm.declaringClass + "#" + cm.fieldName;
+    }
+
+    private void writeReadCursor(String t) {
+        line("@Override");
+        open("public void readCursor(Cursor c, int keyIndex, int[] indexes, " + t + " " + ENTITY + ") throws Exception");
+        line("int i;");
+        if (model.key != null) {
+            open("if ((i = keyIndex) >= 0)");
+            writeRead(model.key);
+            close();
+        }
+        for (int p = 0; p < model.columns.size(); p++) {
+            if (model.columns.get(p).classType == ColumnModel.CLASS_TYPE_UNKNOWN) {
+                // 运行时同样不读取
+                continue;
+            }
+            open("if ((i = indexes[" + p + "]) >= 0)");
+            writeRead(model.columns.get(p));
+            close();
+        }
+        close();
+    }
+
+    private void writeRead(ColumnModel cm) {
+        switch (cm.classType) {
+            case ColumnModel.CLASS_TYPE_STRING:
+                line(cm.set(ENTITY, "c.getString(i)"));
+                break;
+            case ColumnModel.CLASS_TYPE_BOOLEAN:
+                line(cm.set(ENTITY, "Boolean.parseBoolean(c.getString(i))"));
+                break;
+            case ColumnModel.CLASS_TYPE_LONG:
+                line(cm.set(ENTITY, "c.getLong(i)"));
+                break;
+            case ColumnModel.CLASS_TYPE_INT:
+                line(cm.set(ENTITY, "c.getInt(i)"));
+                break;
+            case ColumnModel.CLASS_TYPE_DOUBLE:
+                line(cm.set(ENTITY, "c.getDouble(i)"));
+                break;
+            case ColumnModel.CLASS_TYPE_FLOAT:
+                line(cm.set(ENTITY, "c.getFloat(i)"));
+                break;
+            case ColumnModel.CLASS_TYPE_SHORT:
+                line(cm.set(ENTITY, "c.getShort(i)"));
+                break;
+            case ColumnModel.CLASS_TYPE_BYTE:
+                // 实体可能被多行复用，NULL 也要覆盖
+                line("String s = c.getString(i);");
+                line(cm.set(ENTITY, cm.primitive ? "s != null ? Byte.parseByte(s) : (byte) 0"
+                                                 : "s != null ? Byte.valueOf(s) : null"));
+                break;
+            case ColumnModel.CLASS_TYPE_BYTE_ARRAY:
+                line(cm.set(ENTITY, "c.getBlob(i)"));
+                break;
+            case ColumnModel.CLASS_TYPE_CHAR:
+                line("String s = c.getString(i);");
+                line("boolean has = s != null && s.length() > 0;");
+                line(cm.set(ENTITY, cm.primitive ? "has ? s.charAt(0) : '\\0'"
+                                                 : "has ? Character.valueOf(s.charAt(0)) : null"));
+                break;
+            case ColumnModel.CLASS_TYPE_DATE:
+                line(cm.set(ENTITY, "new java.util.Date(c.getLong(i))"));
+                break;
+            case ColumnModel.CLASS_TYPE_SERIALIZABLE:
+                line("byte[] bytes = c.getBlob(i);");
+                line(cm.set(ENTITY, "bytes != null ? (" + cm.typeName + ") DataUtil.byteToObject(bytes) : null"));
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void writeBindColumn(String t) {
+        line("@Override");
+        open("public void bindColumn(SQLiteProgram st, int index, int property, " + t + " " + ENTITY
+             + ") throws IOException");
+        open("switch (property)");
+        for (int p = 0; p < model.columns.size(); p++) {
+            open("case " + p + ":");
+            writeBind(model.columns.get(p));
+            line("break;");
+            close();
+        }
+        line("default:");
+        indent++;
+        line("st.bindNull(index);");
+        line("break;");
+        indent--;
+        close();
+        close();
+    }
+
+    private void writeBindKey(String t) {
+        ColumnModel key = model.key;
+        line("@Override");
+        open("public void bindKey(SQLiteProgram st, int index, " + t + " " + ENTITY + ") throws IOException");
+        if (key == null) {
+            line("st.bindNull(index);");
+        } else if (model.isKeyAssignedBySystem()) {
+            if (key.primitive) {
+                line("long id = " + key.get(ENTITY) + ";");
+                open("if (id > 0)");
+                line("st.bindLong(index, id);");
+                closeOpen("else");
+                line("st.bindNull(index);");
+                close();
+            } else {
+                line(key.typeName + " id = " + key.get(ENTITY) + ";");
+                open("if (id != null && id.longValue() > 0)");
+                line("st.bindLong(index, id.longValue());");
+                closeOpen("else");
+                line("st.bindNull(index);");
+                close();
+            }
+        } else {
+            writeBind(key);
+        }
+        close();
+    }
+
+    private void writeSetKeyValueIfNeed(String t) {
+        ColumnModel key = model.key;
+        line("@Override");
+        open("public boolean setKeyValueIfNeed(" + t + " " + ENTITY + ", long rowID)");
+        if (key != null && model.isKeyAssignedBySystem()) {
+            String prim = key.primitiveName();
+            String value = "long".equals(prim) ? "rowID" : "(" + prim + ") rowID";
+            if (key.primitive) {
+                open("if (" + key.get(ENTITY) + " < 1)");
+            } else {
+                line(key.typeName + " id = " + key.get(ENTITY) + ";");
+                open("if (id == null || id.longValue() < 1)");
+                value = key.typeName + ".valueOf(" + value + ")";
+            }
+            line(key.set(ENTITY, value));
+            line("return true;");
+            close();
+        }
+        line("return false;");
+        close();
+    }
+
+    private void writeBind(ColumnModel cm) {
+        String get = cm.get(ENTITY);
+        if (cm.primitive) {
+            switch (cm.classType) {
+                case ColumnModel.CLASS_TYPE_BOOLEAN:
+                    line("st.bindString(index, " + get + " ? \"true\" : \"false\");");
+                    break;
+                case ColumnModel.CLASS_TYPE_CHAR:
+                    line("st.bindString(index, String.valueOf(" + get + "));");
+                    break;
+                case ColumnModel.CLASS_TYPE_DOUBLE:
+                case ColumnModel.CLASS_TYPE_FLOAT:
+                    line("st.bindDouble(index, " + get + ");");
+                    break;
+                default:
+                    line("st.bindLong(index, " + get + ");");
+                    break;
+            }
+            return;
+        }
+        if (cm.classType == ColumnModel.CLASS_TYPE_UNKNOWN) {
+            line("st.bindNull(index);");
+            return;
+        }
+        line(cm.typeName + " v = " + get + ";");
+        open("if (v == null)");
+        line("st.bindNull(index);");
+        closeOpen("else");
+        switch (cm.classType) {
+            case ColumnModel.CLASS_TYPE_STRING:
+                line("st.bindString(index, v.toString());");
+                break;
+            case ColumnModel.CLASS_TYPE_BOOLEAN:
+                line("st.bindString(index, v ? \"true\" : \"false\");");
+                break;
+            case ColumnModel.CLASS_TYPE_CHAR:
+                line("st.bindString(index, String.valueOf(v.charValue()));");
+                break;
+            case ColumnModel.CLASS_TYPE_DOUBLE:
+            case ColumnModel.CLASS_TYPE_FLOAT:
+                line("st.bindDouble(index, v.doubleValue());");
+                break;
+            case ColumnModel.CLASS_TYPE_DATE:
+                line("st.bindLong(index, v.getTime());");
+                break;
+            case ColumnModel.CLASS_TYPE_BYTE_ARRAY:
+                line("st.bindBlob(index, v);");
+                break;
+            case ColumnModel.CLASS_TYPE_SERIALIZABLE:
+                line("st.bindBlob(index, DataUtil.objectToByte(v));");
+                break;
+            default:
+                line("st.bindLong(index, v.longValue());");
+                break;
+        }
+        close();
+    }
+
+    static String literal(String s) {
+        StringBuilder b = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                case '\\':
+                    b.append('\\').append(c);
+                    break;
+                case '\n':
+                    b.append("\\n");
+                    break;
+                case '\r':
+                    b.append("\\r");
+                    break;
+                case '\t':
+                    b.append("\\t");
+                    break;
+                default:
+                    b.append(c);
+                    break;
+            }
+        }
+        return b.append('"').toString();
+    }
+
+    private void open(String s) {
+        line(s + " {");
+        indent++;
+    }
+
+    private void closeOpen(String s) {
+        indent--;
+        line("} " + s + " {");
+        indent++;
+    }
+
+    private void close() {
+        indent--;
+        line("}");
+    }
+
+    private void line(String s) {
+        if (s.length() > 0) {
+            for (int i = 0; i < indent; i++) {
+                sb.append("    ");
+            }
+        }
+        sb.append(s).append('\n');
+    }
+}
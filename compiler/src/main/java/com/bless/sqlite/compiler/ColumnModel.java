@@ -0,0 +1,115 @@
+package com.bless.sqlite.compiler;
+
+/**
+ * 实体的一个列(属性)，分类规则与运行时 DataUtil.getFieldClassType 一致
+ */
+final class ColumnModel {
+    static final int CLASS_TYPE_STRING = 1;
+    static final int CLASS_TYPE_BOOLEAN = 2;
+    static final int CLASS_TYPE_DOUBLE = 3;
+    static final int CLASS_TYPE_FLOAT = 4;
+    static final int CLASS_TYPE_LONG = 5;
+    static final int CLASS_TYPE_INT = 6;
+    static final int CLASS_TYPE_SHORT = 7;
+    static final int CLASS_TYPE_BYTE = 8;
+    static final int CLASS_TYPE_BYTE_ARRAY = 9;
+    static final int CLASS_TYPE_CHAR = 10;
+    static final int CLASS_TYPE_DATE = 11;
+    static final int CLASS_TYPE_SERIALIZABLE = 12;
+    static final int CLASS_TYPE_UNKNOWN = 13;
+
+    /**
+     * 列名
+     */
+    final String column;
+    /**
+     * 属性名
+     */
+    final String fieldName;
+    /**
+     * 源码中使用的类型(已擦除泛型)
+     */
+    final String typeName;
+    final int classType;
+    final boolean primitive;
+    /**
+     * 声明该属性的类(binary name)，运行时据此查找 Field
+     */
+    String declaringClass;
+    /**
+     * 属性被子类同名属性隐藏时，访问前先转换为声明类(源码名)，否则为null
+     */
+    String owner;
+    /**
+     * 私有属性通过 getter/setter 访问，否则为null
+     */
+    String getter;
+    String setter;
+    /**
+     * 关系映射，非映射属性为null
+     */
+    String relation;
+    /**
+     * 懒加载的关系映射
+     */
+    boolean lazy;
+
+    /* 建表约束，同 SQLBuilder.buildCreateTable */
+    boolean notNull;
+    String defaultValue;
+    boolean unique;
+    String conflict;
+    String check;
+    String collate;
+    Integer uniqueCombine;
+
+    ColumnModel(String column, String fieldName, String typeName, int classType, boolean primitive) {
+        this.column = column;
+        this.fieldName = fieldName;
+        this.typeName = typeName;
+        this.classType = classType;
+        this.primitive = primitive;
+    }
+
+    /**
+     * 读取属性的表达式
+     */
+    String get(String entity) {
+        return getter != null ? entity + "." + getter + "()" : target(entity) + "." + fieldName;
+    }
+
+    /**
+     * 为属性赋值的语句
+     */
+    String set(String entity, String value) {
+        return setter != null ? entity + "." + setter + "(" + value + ");"
+                              : target(entity) + "." + fieldName + " = " + value + ";";
+    }
+
+    private String target(String entity) {
+        return owner != null ? "((" + owner + ") " + entity + ")" : entity;
+    }
+
+    boolean isIntegral() {
+        return classType == CLASS_TYPE_LONG || classType == CLASS_TYPE_INT
+               || classType == CLASS_TYPE_SHORT || classType == CLASS_TYPE_BYTE;
+    }
+
+    /**
+     * 基本类型名，包装类对应的基本类型
+     */
+    String primitiveName() {
+        switch (classType) {
+            case CLASS_TYPE_LONG:
+                return "long";
+            case CLASS_TYPE_INT:
+                return "int";
+            case CLASS_TYPE_SHORT:
+                return "short";
+            case CLASS_TYPE_BYTE:
+                return "byte";
+            default:
+                return typeName;
+        }
+    }
+}
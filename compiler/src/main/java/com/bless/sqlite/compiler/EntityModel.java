@@ -0,0 +1,510 @@
+package com.bless.sqlite.compiler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+
+/**
+ * 实体的表结构，解析规则与运行时 TableManager.getTable(Class, boolean) 一致。
+ * <p>
+ * 表结构有歧义(重复列名、多个主键等)时不生成任何代码；
+ * 无法在生成代码中直接访问的实体(私有属性且无 getter/setter、没有可见的无参构造等)只生成表结构，
+ * 不生成适配器，运行时读写回退到反射。
+ */
+final class EntityModel {
+    static final String ANNOTATION_PACKAGE = "com.bless.sqlite.db.annotation.";
+    static final String TABLE = ANNOTATION_PACKAGE + "Table";
+    static final String PRIMARY_KEY = ANNOTATION_PACKAGE + "PrimaryKey";
+    static final String COLUMN = ANNOTATION_PACKAGE + "Column";
+    static final String MAPPING = ANNOTATION_PACKAGE + "Mapping";
+    static final String LAZY_TO_ONE = "com.bless.sqlite.db.model.LazyToOne";
+    /**
+     * 可注入 LazyList 的属性类型
+     */
+    static final List<String> LAZY_LIST_TYPES = Arrays.asList("java.util.List", "java.util.Collection",
+            "java.util.AbstractList", "com.bless.sqlite.db.model.LazyList");
+    static final String IGNORE = ANNOTATION_PACKAGE + "Ignore";
+    static final String TEMPORARY = ANNOTATION_PACKAGE + "Temporary";
+    static final String NOT_NULL = ANNOTATION_PACKAGE + "NotNull";
+    static final String DEFAULT = ANNOTATION_PACKAGE + "Default";
+    static final String UNIQUE = ANNOTATION_PACKAGE + "Unique";
+    static final String CONFLICT = ANNOTATION_PACKAGE + "Conflict";
+    static final String CHECK = ANNOTATION_PACKAGE + "Check";
+    static final String COLLATE = ANNOTATION_PACKAGE + "Collate";
+    static final String UNIQUE_COMBINE = ANNOTATION_PACKAGE + "UniqueCombine";
+
+    static final String AUTO_INCREMENT = "AUTO_INCREMENT";
+    static final String CUSTOM_ASSIGN = "CUSTOM_ASSIGN";
+
+    private static final String[] ID = new String[]{"id", "_id"};
+
+    final TypeElement type;
+    final String packageName;
+    /**
+     * 实体类的 binary name，即运行时 Class.getName()
+     */
+    final String className;
+    /**
+     * 源码中使用的实体类名
+     */
+    final String typeName;
+    /**
+     * 生成类的简单类名
+     */
+    final String adapterName;
+    final String tableName;
+    final boolean temporary;
+    ColumnModel key;
+    String keyAssign;
+    final List<ColumnModel> columns = new ArrayList<ColumnModel>();
+    final List<ColumnModel> mappings = new ArrayList<ColumnModel>();
+    /**
+     * 不能生成适配器的原因，可以生成时为null
+     */
+    String adapterUnsupported;
+
+    private EntityModel(TypeElement type, String packageName, String className, String adapterName,
+            String tableName, boolean temporary) {
+        this.type = type;
+        this.packageName = packageName;
+        this.className = className;
+        this.typeName = type.getQualifiedName().toString();
+        this.adapterName = adapterName;
+        this.tableName = tableName;
+        this.temporary = temporary;
+    }
+
+    boolean isKeyAssignedBySystem() {
+        return AUTO_INCREMENT.equals(keyAssign);
+    }
+
+    private void adapterUnsupported(String reason) {
+        if (adapterUnsupported == null) {
+            adapterUnsupported = reason;
+        }
+    }
+
+    /**
+     * 解析实体
+     *
+     * @throws UnsupportedException 表结构有歧义，或运行时建表会失败
+     */
+    static EntityModel parse(TypeElement type, ProcessingEnvironment env) throws UnsupportedException {
+        Elements elements = env.getElementUtils();
+        Types types = env.getTypeUtils();
+
+        if (type.getKind() != ElementKind.CLASS) {
+            throw new UnsupportedException("not a class");
+        }
+        PackageElement pkg = elements.getPackageOf(type);
+        String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+        String className = elements.getBinaryName(type).toString();
+        String simpleBinary = packageName.isEmpty() ? className : className.substring(packageName.length() + 1);
+        String adapterName = simpleBinary.replace('$', '_') + "_SQLiteAdapter";
+
+        AnnotationMirror table = getAnnotation(type, TABLE);
+        String tableName = table != null ? (String) getValue(table) : className.replace('.', '_');
+
+        EntityModel model = new EntityModel(type, packageName, className, adapterName, tableName,
+                getAnnotation(type, TEMPORARY) != null);
+        checkTypeAccessible(model, type);
+        checkConstructor(model, type);
+
+        Set<String> names = new HashSet<String>();
+        Set<String> fieldNames = new HashSet<String>();
+        TypeElement claxx = type;
+        while (claxx != null && !"java.lang.Object".equals(claxx.getQualifiedName().toString())) {
+            String declaring = elements.getBinaryName(claxx).toString();
+            for (VariableElement f : ElementFilter.fieldsIn(claxx.getEnclosedElements())) {
+                Set<Modifier> mods = f.getModifiers();
+                boolean isStatic = mods.contains(Modifier.STATIC);
+                // 子类先于父类遍历，同名的父类属性被隐藏
+                boolean hidden = !fieldNames.add(f.getSimpleName().toString());
+                if (isStatic && mods.contains(Modifier.FINAL) || getAnnotation(f, IGNORE) != null) {
+                    continue;
+                }
+                if (isStatic) {
+                    model.adapterUnsupported("static field " + f.getSimpleName() + " is mapped as a column");
+                }
+                AnnotationMirror col = getAnnotation(f, COLUMN);
+                String column = col != null ? (String) getValue(col) : f.getSimpleName().toString();
+                ColumnModel cm = createColumn(model, column, f, types, elements);
+                cm.declaringClass = declaring;
+                AnnotationMirror key = getAnnotation(f, PRIMARY_KEY);
+                AnnotationMirror mapping = key == null ? getAnnotation(f, MAPPING) : null;
+                if (mapping != null) {
+                    // 关系映射由运行时处理，只记录属性
+                    cm.relation = getValue(mapping).toString();
+                    cm.lazy = Boolean.TRUE.equals(getValue(mapping, "lazy"));
+                    if (cm.lazy) {
+                        checkLazyMapping(cm, f, types);
+                    }
+                    model.mappings.add(cm);
+                    continue;
+                }
+                if (!names.add(column)) {
+                    throw new UnsupportedException("duplicate column " + column);
+                }
+                if (!isStatic) {
+                    resolveAccess(model, cm, f, type, pkg, elements, types);
+                    if (hidden) {
+                        resolveHidden(model, cm, claxx, pkg, elements);
+                    }
+                }
+                if (key != null) {
+                    if (model.key != null) {
+                        throw new UnsupportedException("more than one @PrimaryKey");
+                    }
+                    model.key = cm;
+                    model.keyAssign = getValue(key).toString();
+                } else {
+                    readConstraints(cm, f);
+                    model.columns.add(cm);
+                }
+            }
+            TypeMirror sup = claxx.getSuperclass();
+            claxx = sup.getKind() == TypeKind.DECLARED ? (TypeElement) types.asElement(sup) : null;
+        }
+        if (model.key == null) {
+            findDefaultKey(model);
+        }
+        if (model.key != null) {
+            checkKey(model);
+        }
+        return model;
+    }
+
+    /**
+     * 没有 @PrimaryKey 时，运行时按属性顺序取第一个名为 id/_id 的属性作为主键。
+     * 编译期无法得知反射的属性顺序，有多个候选时不生成。
+     */
+    private static void findDefaultKey(EntityModel model) throws UnsupportedException {
+        ColumnModel found = null;
+        for (ColumnModel cm : model.columns) {
+            for (String id : ID) {
+                if (id.equalsIgnoreCase(cm.column)
+                    && ("java.lang.String".equals(cm.typeName) || cm.isIntegral())) {
+                    if (found != null) {
+                        throw new UnsupportedException("ambiguous default primary key");
+                    }
+                    found = cm;
+                }
+            }
+        }
+        if (found != null) {
+            model.columns.remove(found);
+            model.key = found;
+            model.keyAssign = found.isIntegral() ? AUTO_INCREMENT : CUSTOM_ASSIGN;
+        }
+    }
+
+    private static void checkKey(EntityModel model) throws UnsupportedException {
+        ColumnModel key = model.key;
+        if (model.isKeyAssignedBySystem()) {
+            if (!key.isIntegral()) {
+                throw new UnsupportedException("auto increment primary key must be a number");
+            }
+        } else if (!CUSTOM_ASSIGN.equals(model.keyAssign)) {
+            throw new UnsupportedException("primary key without assign type");
+        } else if (!"java.lang.String".equals(key.typeName) && !key.isIntegral()) {
+            throw new UnsupportedException("custom primary key must be string or number");
+        }
+    }
+
+    /**
+     * 类型分类与 DataUtil.getFieldClassType 一致，生成代码不支持的类型只标记适配器不可用
+     */
+    private static ColumnModel createColumn(EntityModel model, String column, VariableElement f, Types types,
+            Elements elements) {
+        TypeMirror t = f.asType();
+        String name = f.getSimpleName().toString();
+        TypeKind kind = t.getKind();
+        if (kind.isPrimitive()) {
+            int classType;
+            switch (kind) {
+                case BOOLEAN:
+                    classType = ColumnModel.CLASS_TYPE_BOOLEAN;
+                    break;
+                case DOUBLE:
+                    classType = ColumnModel.CLASS_TYPE_DOUBLE;
+                    break;
+                case FLOAT:
+                    classType = ColumnModel.CLASS_TYPE_FLOAT;
+                    break;
+                case LONG:
+                    classType = ColumnModel.CLASS_TYPE_LONG;
+                    break;
+                case INT:
+                    classType = ColumnModel.CLASS_TYPE_INT;
+                    break;
+                case SHORT:
+                    classType = ColumnModel.CLASS_TYPE_SHORT;
+                    break;
+                case BYTE:
+                    classType = ColumnModel.CLASS_TYPE_BYTE;
+                    break;
+                default:
+                    classType = ColumnModel.CLASS_TYPE_CHAR;
+                    break;
+            }
+            return new ColumnModel(column, name, t.toString(), classType, true);
+        }
+        if (isTypeVariable(t)) {
+            // 父类泛型属性擦除为上界，生成的赋值与子类中的实际类型不符，交给反射处理
+            model.adapterUnsupported("field " + name + " is declared with a type variable");
+        }
+        TypeMirror erased = types.erasure(t);
+        String typeName = erased.toString();
+        int classType;
+        if (types.isAssignable(erased, type(elements, types, "java.lang.CharSequence"))) {
+            if (!"java.lang.String".equals(typeName) && !"java.lang.CharSequence".equals(typeName)) {
+                model.adapterUnsupported("CharSequence field " + name + " is not a String");
+            }
+            classType = ColumnModel.CLASS_TYPE_STRING;
+        } else if ("java.lang.Boolean".equals(typeName)) {
+            classType = ColumnModel.CLASS_TYPE_BOOLEAN;
+        } else if ("java.lang.Double".equals(typeName)) {
+            classType = ColumnModel.CLASS_TYPE_DOUBLE;
+        } else if ("java.lang.Float".equals(typeName)) {
+            classType = ColumnModel.CLASS_TYPE_FLOAT;
+        } else if ("java.lang.Long".equals(typeName)) {
+            classType = ColumnModel.CLASS_TYPE_LONG;
+        } else if ("java.lang.Integer".equals(typeName)) {
+            classType = ColumnModel.CLASS_TYPE_INT;
+        } else if ("java.lang.Short".equals(typeName)) {
+            classType = ColumnModel.CLASS_TYPE_SHORT;
+        } else if ("java.lang.Byte".equals(typeName)) {
+            classType = ColumnModel.CLASS_TYPE_BYTE;
+        } else if ("byte[]".equals(typeName) || "java.lang.Byte[]".equals(typeName)) {
+            if (!"byte[]".equals(typeName)) {
+                model.adapterUnsupported("Byte[] field " + name);
+            }
+            classType = ColumnModel.CLASS_TYPE_BYTE_ARRAY;
+        } else if ("java.lang.Character".equals(typeName)) {
+            classType = ColumnModel.CLASS_TYPE_CHAR;
+        } else if (types.isAssignable(erased, type(elements, types, "java.util.Date"))) {
+            if (!"java.util.Date".equals(typeName)) {
+                model.adapterUnsupported("Date field " + name + " is a subclass of java.util.Date");
+            }
+            classType = ColumnModel.CLASS_TYPE_DATE;
+        } else if (types.isAssignable(erased, type(elements, types, "java.io.Serializable"))) {
+            classType = ColumnModel.CLASS_TYPE_SERIALIZABLE;
+        } else {
+            classType = ColumnModel.CLASS_TYPE_UNKNOWN;
+        }
+        return new ColumnModel(column, name, typeName, classType, false);
+    }
+
+    private static boolean isTypeVariable(TypeMirror t) {
+        while (t.getKind() == TypeKind.ARRAY) {
+            t = ((ArrayType) t).getComponentType();
+        }
+        return t.getKind() == TypeKind.TYPEVAR;
+    }
+
+    /**
+     * 建表约束，同 SQLBuilder.buildCreateTable
+     */
+    private static void readConstraints(ColumnModel cm, VariableElement f) {
+        AnnotationMirror am;
+        cm.notNull = getAnnotation(f, NOT_NULL) != null;
+        if ((am = getAnnotation(f, DEFAULT)) != null) {
+            cm.defaultValue = (String) getValue(am);
+        }
+        cm.unique = getAnnotation(f, UNIQUE) != null;
+        if ((am = getAnnotation(f, CONFLICT)) != null) {
+            cm.conflict = getValue(am).toString();
+        }
+        if ((am = getAnnotation(f, CHECK)) != null) {
+            cm.check = (String) getValue(am);
+        }
+        if ((am = getAnnotation(f, COLLATE)) != null) {
+            cm.collate = (String) getValue(am);
+        }
+        if ((am = getAnnotation(f, UNIQUE_COMBINE)) != null) {
+            cm.uniqueCombine = (Integer) getValue(am);
+        }
+    }
+
+    /**
+     * 属性可直接访问时使用属性，私有属性查找同类型的 getter/setter
+     */
+    private static void resolveAccess(EntityModel model, ColumnModel cm, VariableElement f, TypeElement type,
+            PackageElement pkg, Elements elements, Types types) {
+        if (isAccessible(f, pkg, elements)) {
+            return;
+        }
+        String cap = Character.toUpperCase(cm.fieldName.charAt(0)) + cm.fieldName.substring(1);
+        TypeMirror ft = types.erasure(f.asType());
+        for (ExecutableElement m : ElementFilter.methodsIn(elements.getAllMembers(type))) {
+            if (m.getModifiers().contains(Modifier.STATIC) || !isAccessible(m, pkg, elements)) {
+                continue;
+            }
+            String name = m.getSimpleName().toString();
+            List<? extends VariableElement> params = m.getParameters();
+            if (params.isEmpty() && types.isSameType(types.erasure(m.getReturnType()), ft)
+                && (name.equals("get" + cap) || name.equals("is" + cap) && cm.classType == ColumnModel.CLASS_TYPE_BOOLEAN)) {
+                cm.getter = name;
+            } else if (params.size() == 1 && name.equals("set" + cap)
+                       && types.isSameType(types.erasure(params.get(0).asType()), ft)) {
+                cm.setter = name;
+            }
+        }
+        if (cm.getter == null || cm.setter == null) {
+            model.adapterUnsupported("field " + cm.fieldName + " is not accessible and has no getter/setter");
+        }
+    }
+
+    /**
+     * 父类属性被子类同名属性隐藏时，e.name 访问的是子类属性，改为转换到声明类后访问。
+     * getter/setter 可能被子类覆盖，声明类不可访问时无法转换，这两种情况不生成。
+     */
+    private static void resolveHidden(EntityModel model, ColumnModel cm, TypeElement declaring, PackageElement pkg,
+            Elements elements) {
+        if (cm.getter != null || cm.setter != null) {
+            model.adapterUnsupported("field " + cm.fieldName + " is hidden by a subclass field");
+            return;
+        }
+        Element e = declaring;
+        while (e instanceof TypeElement) {
+            if (!isAccessible(e, pkg, elements)) {
+                model.adapterUnsupported("field " + cm.fieldName + " is hidden and its class is not accessible");
+                return;
+            }
+            e = e.getEnclosingElement();
+        }
+        cm.owner = declaring.getQualifiedName().toString();
+    }
+
+    private static boolean isAccessible(Element e, PackageElement pkg, Elements elements) {
+        Set<Modifier> mods = e.getModifiers();
+        if (mods.contains(Modifier.PUBLIC)) {
+            return true;
+        }
+        if (mods.contains(Modifier.PRIVATE)) {
+            return false;
+        }
+        return elements.getPackageOf(e).equals(pkg);
+    }
+
+    private static void checkTypeAccessible(EntityModel model, TypeElement type) {
+        if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+            model.adapterUnsupported("abstract class");
+        }
+        if (!type.getTypeParameters().isEmpty()) {
+            model.adapterUnsupported("generic entity class");
+        }
+        Element e = type;
+        while (e instanceof TypeElement) {
+            TypeElement te = (TypeElement) e;
+            if (te.getModifiers().contains(Modifier.PRIVATE)) {
+                model.adapterUnsupported("private class");
+            }
+            if (te.getNestingKind() == NestingKind.MEMBER) {
+                if (!te.getModifiers().contains(Modifier.STATIC)) {
+                    model.adapterUnsupported("inner class is not static");
+                }
+            } else if (te.getNestingKind() != NestingKind.TOP_LEVEL) {
+                model.adapterUnsupported("local or anonymous class");
+            }
+            e = te.getEnclosingElement();
+        }
+    }
+
+    private static void checkConstructor(EntityModel model, TypeElement type) {
+        for (ExecutableElement c : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (c.getParameters().isEmpty() && !c.getModifiers().contains(Modifier.PRIVATE)) {
+                return;
+            }
+        }
+        model.adapterUnsupported("no visible no-arg constructor");
+    }
+
+    private static TypeMirror type(Elements elements, Types types, String name) {
+        return types.erasure(elements.getTypeElement(name).asType());
+    }
+
+    /**
+     * 同 TableManager.checkMapping
+     */
+    private static void checkLazyMapping(ColumnModel cm, VariableElement f, Types types)
+            throws UnsupportedException {
+        String type = types.erasure(f.asType()).toString();
+        boolean ok;
+        if (cm.relation.endsWith("ToOne")) {
+            ok = LAZY_TO_ONE.equals(type);
+        } else {
+            ok = LAZY_LIST_TYPES.contains(type);
+        }
+        if (!ok) {
+            throw new UnsupportedException("lazy mapping " + f.getSimpleName() + " has an unsupported type " + type);
+        }
+    }
+
+    static AnnotationMirror getAnnotation(Element e, String name) {
+        for (AnnotationMirror am : e.getAnnotationMirrors()) {
+            TypeElement te = (TypeElement) ((DeclaredType) am.getAnnotationType()).asElement();
+            if (te.getQualifiedName().contentEquals(name)) {
+                return am;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 注解的 value()，枚举值返回常量名
+     */
+    static Object getValue(AnnotationMirror am) {
+        return getValue(am, "value");
+    }
+
+    /**
+     * 注解的属性值，未设置(使用默认值)时返回null，枚举值返回常量名
+     */
+    static Object getValue(AnnotationMirror am, String name) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                : am.getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(name)) {
+                Object value = entry.getValue().getValue();
+                if (value instanceof VariableElement) {
+                    return ((VariableElement) value).getSimpleName().toString();
+                }
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 实体不支持生成
+     */
+    static final class UnsupportedException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.bless.sqlite.compiler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+
+/**
+ * 为带 @Table 或 @PrimaryKey 的实体生成：
+ * <p>
+ * 1. EntityAdapter，运行时用它代替反射读写属性；
+ * 2. 全部实体的 EntityIndex，包含预先计算好的表结构和建表语句，运行时不再反射解析注解。
+ * <p>
+ * 索引类名默认为 com.bless.sqlite.generated.BlessSqliteIndex，多个模块各自生成索引时，
+ * 通过处理器参数 blessSqlite.index 指定不同类名，并调用 TableManager.registerIndex 注册。
+ */
+public class EntityProcessor extends AbstractProcessor {
+    static final String OPTION_INDEX = "blessSqlite.index";
+    static final String DEFAULT_INDEX = "com.bless.sqlite.generated.BlessSqliteIndex";
+
+    private final Set<String> generated = new HashSet<String>();
+    private boolean indexWritten;
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        Set<String> set = new LinkedHashSet<String>();
+        set.add(EntityModel.TABLE);
+        set.add(EntityModel.PRIMARY_KEY);
+        return set;
+    }
+
+    @Override
+    public Set<String> getSupportedOptions() {
+        return Collections.singleton(OPTION_INDEX);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Set<TypeElement> entities = new LinkedHashSet<TypeElement>();
+        for (TypeElement annotation : annotations) {
+            for (Element e : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (e.getKind() == ElementKind.CLASS) {
+                    entities.add((TypeElement) e);
+                } else if (e.getKind() == ElementKind.FIELD) {
+                    entities.add((TypeElement) e.getEnclosingElement());
+                }
+            }
+        }
+        List<EntityModel> models = new ArrayList<EntityModel>();
+        for (TypeElement type : entities) {
+            if (!generated.add(type.getQualifiedName().toString())) {
+                continue;
+            }
+            try {
+                EntityModel model = EntityModel.parse(type, processingEnv);
+                models.add(model);
+                if (model.adapterUnsupported == null) {
+                    new AdapterWriter(model).write(processingEnv.getFiler());
+                } else {
+                    note(type, "no adapter for " + type.getQualifiedName() + ", " + model.adapterUnsupported
+                               + ", reflection will be used to read and bind it");
+                }
+            } catch (EntityModel.UnsupportedException e) {
+                note(type, "skip " + type.getQualifiedName() + ", " + e.getMessage()
+                           + ", reflection will be used at runtime");
+            } catch (IOException e) {
+                error(type, "failed to write adapter for " + type.getQualifiedName() + ": " + e);
+            }
+        }
+        if (!models.isEmpty()) {
+            writeIndex(models);
+        }
+        return false;
+    }
+
+    /**
+     * 索引只生成一次，之后轮次(由其他处理器生成的)新实体不在索引中，运行时对其使用反射
+     */
+    private void writeIndex(List<EntityModel> models) {
+        if (indexWritten) {
+            for (EntityModel model : models) {
+                note(model.type, model.typeName + " is generated in a later round and not in the entity index");
+            }
+            return;
+        }
+        indexWritten = true;
+        String indexName = processingEnv.getOptions().get(OPTION_INDEX);
+        if (indexName == null || indexName.trim().isEmpty()) {
+            indexName = DEFAULT_INDEX;
+        }
+        try {
+            new IndexWriter(indexName.trim(), models).write(processingEnv.getFiler());
+        } catch (IOException e) {
+            error(null, "failed to write entity index " + indexName + ": " + e);
+        }
+    }
+
+    private void note(Element e, String msg) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, "bless-sqlite: " + msg, e);
+    }
+
+    private void error(Element e, String msg) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "bless-sqlite: " + msg, e);
+    }
+}
@@ -0,0 +1,258 @@
+package com.bless.sqlite.compiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.annotation.processing.Filer;
+import javax.lang.model.element.Element;
+import javax.tools.JavaFileObject;
+
+/**
+ * 生成实体索引 EntityIndex：每个实体预先计算好的表结构和建表语句，
+ * 建表语句与运行时 SQLBuilder.buildCreateTable 逐字一致。
+ */
+final class IndexWriter {
+    private static final String CREATE = "CREATE ";
+    private static final String TEMP = "TEMP ";
+    private static final String TABLE_IF_NOT_EXISTS = "TABLE IF NOT EXISTS ";
+    private static final String PRIMARY_KEY_AUTOINCREMENT = "PRIMARY KEY AUTOINCREMENT ";
+    private static final String PRIMARY_KEY = "PRIMARY KEY ";
+    private static final String NOT_NULL = "NOT NULL ";
+    private static final String DEFAULT = "DEFAULT ";
+    private static final String UNIQUE = "UNIQUE ";
+    private static final String ON_CONFLICT = "ON CONFLICT ";
+    private static final String CHECK = "CHECK ";
+    private static final String COLLATE = "COLLATE ";
+    private static final String INTEGER = " INTEGER ";
+    private static final String REAL = " REAL ";
+    private static final String TEXT = " TEXT ";
+    private static final String BLOB = " BLOB ";
+
+    private final String indexName;
+    private final List<EntityModel> models;
+    private final StringBuilder sb = new StringBuilder();
+    private int indent;
+
+    IndexWriter(String indexName, List<EntityModel> models) {
+        this.indexName = indexName;
+        this.models = models;
+    }
+
+    void write(Filer filer) throws IOException {
+        Element[] origins = new Element[models.size()];
+        for (int i = 0; i < origins.length; i++) {
+            origins[i] = models.get(i).type;
+        }
+        JavaFileObject file = filer.createSourceFile(indexName, origins);
+        Writer writer = file.openWriter();
+        try {
+            writer.write(generate());
+        } finally {
+            writer.close();
+        }
+    }
+
+    String generate() {
+        int dot = indexName.lastIndexOf('.');
+        String packageName = dot > 0 ? indexName.substring(0, dot) : "";
+        String simpleName = indexName.substring(dot + 1);
+        line("// Generated by bless-sqlite compiler. Do not modify!");
+        if (!packageName.isEmpty()) {
+            line("package " + packageName + ";");
+            line("");
+        }
+        line("import com.bless.sqlite.db.assit.EntityIndex;");
+        line("import com.bless.sqlite.db.enums.AssignType;");
+        line("import com.bless.sqlite.db.enums.Relation;");
+        line("import com.bless.sqlite.db.model.EntityTable;");
+        line("import com.bless.sqlite.db.model.MapProperty;");
+        line("import com.bless.sqlite.db.model.Primarykey;");
+        line("import com.bless.sqlite.db.model.Property;");
+        line("import com.bless.sqlite.db.utils.FieldUtil;");
+        line("");
+        line("import java.util.LinkedHashMap;");
+        line("");
+        open("public final class " + simpleName + " implements EntityIndex");
+        StringBuilder names = new StringBuilder();
+        for (int i = 0; i < models.size(); i++) {
+            if (i > 0) {
+                names.append(", ");
+            }
+            names.append(AdapterWriter.literal(models.get(i).className));
+        }
+        line("private static final String[] ENTITIES = new String[]{" + names + "};");
+        line("");
+        line("@Override");
+        open("public String[] getEntityNames()");
+        line("return ENTITIES;");
+        close();
+        line("");
+        line("@Override");
+        open("public EntityTable createTable(Class<?> c) throws NoSuchFieldException");
+        line("String name = c.getName();");
+        for (int i = 0; i < models.size(); i++) {
+            open("if (ENTITIES[" + i + "].equals(name))");
+            line("return create" + i + "(c);");
+            close();
+        }
+        line("return null;");
+        close();
+        for (int i = 0; i < models.size(); i++) {
+            line("");
+            writeCreate(i, models.get(i));
+        }
+        close();
+        return sb.toString();
+    }
+
+    private void writeCreate(int i, EntityModel model) {
+        open("private static EntityTable create" + i + "(Class<?> c) throws NoSuchFieldException");
+        line("EntityTable t = new EntityTable();");
+        line("t.claxx = c;");
+        line("t.name = " + AdapterWriter.literal(model.tableName) + ";");
+        if (model.key != null) {
+            ColumnModel key = model.key;
+            line("t.key = new Primarykey(" + AdapterWriter.literal(key.column) + ", " + field(key) + ", "
+                 + key.classType + ", AssignType." + model.keyAssign + ");");
+        }
+        line("t.pmap = new LinkedHashMap<String, Property>();");
+        for (ColumnModel cm : model.columns) {
+            String col = AdapterWriter.literal(cm.column);
+            line("t.pmap.put(" + col + ", new Property(" + col + ", " + field(cm) + ", " + cm.classType + "));");
+        }
+        for (ColumnModel cm : model.mappings) {
+            line("t.addMapping(new MapProperty(new Property(" + AdapterWriter.literal(cm.column) + ", "
+                 + field(cm) + "), Relation." + cm.relation + (cm.lazy ? ", true" : "") + "));");
+        }
+        line("t.createTableSql = " + AdapterWriter.literal(buildCreateTable(model)) + ";");
+        line("return t;");
+        close();
+    }
+
+    private static String field(ColumnModel cm) {
+        return "FieldUtil.getDeclaredField(c, " + AdapterWriter.literal(cm.declaringClass) + ", "
+               + AdapterWriter.literal(cm.fieldName) + ")";
+    }
+
+    /**
+     * 同 SQLBuilder.buildCreateTable
+     */
+    static String buildCreateTable(EntityModel model) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(CREATE);
+        if (model.temporary) {
+            sb.append(TEMP);
+        }
+        sb.append(TABLE_IF_NOT_EXISTS).append(model.tableName).append('(');
+        ColumnModel key = model.key;
+        if (key != null) {
+            if (model.isKeyAssignedBySystem()) {
+                sb.append(key.column).append(INTEGER).append(PRIMARY_KEY_AUTOINCREMENT);
+            } else {
+                sb.append(key.column).append(sqlType(key.classType)).append(PRIMARY_KEY);
+            }
+        }
+        if (!model.columns.isEmpty()) {
+            if (key != null) {
+                sb.append(',');
+            }
+            boolean needComma = false;
+            TreeMap<Integer, List<String>> combineUniqueMap = new TreeMap<Integer, List<String>>();
+            for (ColumnModel cm : model.columns) {
+                if (needComma) {
+                    sb.append(',');
+                } else {
+                    needComma = true;
+                }
+                sb.append(cm.column).append(sqlType(cm.classType));
+                if (cm.notNull) {
+                    sb.append(NOT_NULL);
+                }
+                if (cm.defaultValue != null) {
+                    sb.append(DEFAULT).append(cm.defaultValue).append(' ');
+                }
+                if (cm.unique) {
+                    sb.append(UNIQUE);
+                }
+                if (cm.conflict != null) {
+                    sb.append(ON_CONFLICT).append(' ').append(cm.conflict).append(' ').append(' ');
+                }
+                if (cm.check != null) {
+                    sb.append(CHECK).append('(').append(cm.check).append(')').append(' ');
+                }
+                if (cm.collate != null) {
+                    sb.append(COLLATE).append(cm.collate).append(' ');
+                }
+                if (cm.uniqueCombine != null) {
+                    List<String> list = combineUniqueMap.get(cm.uniqueCombine);
+                    if (list == null) {
+                        list = new ArrayList<String>();
+                        combineUniqueMap.put(cm.uniqueCombine, list);
+                    }
+                    list.add(cm.column);
+                }
+            }
+            for (Map.Entry<Integer, List<String>> en : combineUniqueMap.entrySet()) {
+                List<String> list = en.getValue();
+                if (list.size() > 1) {
+                    sb.append(',').append(UNIQUE).append('(');
+                    for (int j = 0; j < list.size(); j++) {
+                        if (j != 0) {
+                            sb.append(',');
+                        }
+                        sb.append(list.get(j));
+                    }
+                    sb.append(')');
+                }
+            }
+        }
+        sb.append(')');
+        return sb.toString();
+    }
+
+    /**
+     * 同 DataUtil.getSQLDataType
+     */
+    private static String sqlType(int classType) {
+        switch (classType) {
+            case ColumnModel.CLASS_TYPE_STRING:
+            case ColumnModel.CLASS_TYPE_BOOLEAN:
+            case ColumnModel.CLASS_TYPE_CHAR:
+                return TEXT;
+            case ColumnModel.CLASS_TYPE_DOUBLE:
+            case ColumnModel.CLASS_TYPE_FLOAT:
+                return REAL;
+            case ColumnModel.CLASS_TYPE_LONG:
+            case ColumnModel.CLASS_TYPE_INT:
+            case ColumnModel.CLASS_TYPE_SHORT:
+            case ColumnModel.CLASS_TYPE_BYTE:
+            case ColumnModel.CLASS_TYPE_DATE:
+                return INTEGER;
+            default:
+                return BLOB;
+        }
+    }
+
+    private void open(String s) {
+        line(s + " {");
+        indent++;
+    }
+
+    private void close() {
+        indent--;
+        line("}");
+    }
+
+    private void line(String s) {
+        if (s.length() > 0) {
+            for (int i = 0; i < indent; i++) {
+                sb.append("    ");
+            }
+        }
+        sb.append(s).append('\n');
+    }
+}
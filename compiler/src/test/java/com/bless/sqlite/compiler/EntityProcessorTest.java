@@ -0,0 +1,154 @@
+package com.bless.sqlite.compiler;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 注解处理器生成的适配器，只运行注解处理，不编译生成的代码
+ */
+public class EntityProcessorTest {
+    private static final String[] ANNOTATIONS = {
+            "package com.bless.sqlite.db.annotation;"
+            + "public @interface Table { String value(); }",
+            "package com.bless.sqlite.db.annotation;"
+            + "public @interface Column { String value(); }",
+            "package com.bless.sqlite.db.annotation;"
+            + "public @interface PrimaryKey { com.bless.sqlite.db.enums.AssignType value(); }",
+            "package com.bless.sqlite.db.enums;"
+            + "public enum AssignType { CUSTOM_ASSIGN, AUTO_INCREMENT }"
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * 父类属性被子类同名属性隐藏时，按声明类访问，不能读写到子类属性
+     */
+    @Test
+    public void hiddenFieldIsAccessedThroughDeclaringClass() throws Exception {
+        String adapter = process("com.y.User_SQLiteAdapter",
+                "package com.y;"
+                + "public class Base { @com.bless.sqlite.db.annotation.Column(\"base_name\") String name; }",
+                "package com.y;"
+                + "@com.bless.sqlite.db.annotation.Table(\"user\")"
+                + "public class User extends Base {"
+                + "  @com.bless.sqlite.db.annotation.PrimaryKey(com.bless.sqlite.db.enums.AssignType.AUTO_INCREMENT)"
+                + "  long id;"
+                + "  @com.bless.sqlite.db.annotation.Column(\"user_name\") String name;"
+                + "}");
+        assertTrue(adapter.contains("COLUMNS = new String[]{\"user_name\", \"base_name\"}"));
+        assertTrue(adapter.contains("FIELDS = new String[]{\"com.y.User#name\", \"com.y.Base#name\"}"));
+        assertTrue(adapter.contains("e.name = c.getString(i);"));
+        assertTrue(adapter.contains("((com.y.Base) e).name = c.getString(i);"));
+        assertTrue(adapter.contains("java.lang.String v = e.name;"));
+        assertTrue(adapter.contains("java.lang.String v = ((com.y.Base) e).name;"));
+    }
+
+    /**
+     * 被隐藏的属性通过 getter/setter 访问时，方法可能被子类覆盖，不生成适配器
+     */
+    @Test
+    public void hiddenFieldWithAccessorsHasNoAdapter() throws Exception {
+        String adapter = process("com.y.User_SQLiteAdapter",
+                "package com.y;"
+                + "public class Base {"
+                + "  @com.bless.sqlite.db.annotation.Column(\"base_name\") private String name;"
+                + "  public String getName() { return name; }"
+                + "  public void setName(String name) { this.name = name; }"
+                + "}",
+                "package com.y;"
+                + "@com.bless.sqlite.db.annotation.Table(\"user\")"
+                + "public class User extends Base {"
+                + "  @com.bless.sqlite.db.annotation.PrimaryKey(com.bless.sqlite.db.enums.AssignType.AUTO_INCREMENT)"
+                + "  long id;"
+                + "  @com.bless.sqlite.db.annotation.Column(\"user_name\") String name;"
+                + "}");
+        assertNull(adapter);
+    }
+
+    /**
+     * 运行注解处理器
+     *
+     * @return 生成的类源码，没有生成返回null
+     */
+    private String process(String generated, String... sources) throws IOException {
+        File out = folder.newFolder();
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        StandardJavaFileManager fm = compiler.getStandardFileManager(null, null, null);
+        fm.setLocation(StandardLocation.SOURCE_OUTPUT, Collections.singleton(out));
+        fm.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singleton(out));
+        List<JavaFileObject> files = new ArrayList<JavaFileObject>();
+        for (String s : ANNOTATIONS) {
+            files.add(new Source(s));
+        }
+        for (String s : sources) {
+            files.add(new Source(s));
+        }
+        // 生成的代码引用 Android 与运行时库，在这里无法解析，只检查生成结果，忽略编译诊断
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+        JavaCompiler.CompilationTask task = compiler.getTask(null, fm, diagnostics, Arrays.asList("-proc:only"), null,
+                files);
+        task.setProcessors(Collections.singleton(new EntityProcessor()));
+        task.call();
+        fm.close();
+        File file = new File(out, generated.replace('.', File.separatorChar) + ".java");
+        if (!file.exists()) {
+            return null;
+        }
+        String code = new String(Files.readAllBytes(file.toPath()), Charset.forName("UTF-8"));
+        assertFalse(code.isEmpty());
+        return code;
+    }
+
+    /**
+     * 内存中的源文件，类名取自 package 与 class/@interface/enum 声明
+     */
+    private static final class Source extends SimpleJavaFileObject {
+        private final String code;
+
+        Source(String code) {
+            super(URI.create("string:///" + className(code).replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.code = code;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return code;
+        }
+
+        private static String className(String code) {
+            String pkg = code.substring("package ".length(), code.indexOf(';'));
+            String[] words = code.substring(code.indexOf(';') + 1).split("[\\s{(]+");
+            for (int i = 0; i < words.length - 1; i++) {
+                String w = words[i];
+                if (w.equals("class") || w.equals("@interface") || w.equals("interface") || w.equals("enum")) {
+                    return pkg + "." + words[i + 1];
+                }
+            }
+            throw new IllegalArgumentException(code);
+        }
+    }
+}
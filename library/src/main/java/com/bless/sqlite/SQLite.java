@@ -10,16 +10,21 @@ import com.bless.sqlite.db.DataBaseConfig;
 import com.bless.sqlite.db.TableManager;
 import com.bless.sqlite.db.assit.Checker;
 import com.bless.sqlite.db.assit.CollSpliter;
+import com.bless.sqlite.db.assit.ColumnarResult;
 import com.bless.sqlite.db.assit.Querier;
 import com.bless.sqlite.db.assit.QueryBuilder;
+import com.bless.sqlite.db.assit.RowVisitor;
 import com.bless.sqlite.db.assit.SQLBuilder;
 import com.bless.sqlite.db.assit.SQLStatement;
 import com.bless.sqlite.db.assit.SQLiteHelper;
+import com.bless.sqlite.db.assit.StatementCache;
 import com.bless.sqlite.db.assit.WhereBuilder;
 import com.bless.sqlite.db.impl.DSQLiteFactory;
 import com.bless.sqlite.db.model.ColumnsValue;
 import com.bless.sqlite.db.model.ConflictAlgorithm;
 import com.bless.sqlite.db.model.EntityTable;
+import com.bless.sqlite.db.model.LazyList;
+import com.bless.sqlite.db.model.LazyToOne;
 import com.bless.sqlite.db.model.MapProperty;
 import com.bless.sqlite.db.model.RelationKey;
 import com.bless.sqlite.db.utils.ClassUtil;
@@ -47,12 +52,15 @@ public abstract class SQLite extends SQLiteClosable implements DataBase {
 
     protected TableManager mTableManager;
 
+    protected StatementCache mStatementCache;
+
     protected SQLite otherDatabase;
 
     protected SQLite(SQLite dataBase) {
         this.mHelper = dataBase.mHelper;
         this.mConfig = dataBase.mConfig;
         this.mTableManager = dataBase.mTableManager;
+        this.mStatementCache = dataBase.mStatementCache;
         this.otherDatabase = dataBase;
     }
 
@@ -77,8 +85,10 @@ public abstract class SQLite extends SQLiteClosable implements DataBase {
         }
         mHelper = new SQLiteHelper(mConfig.context.getApplicationContext(),
                 mConfig.dbName, null, mConfig.dbVersion, mConfig.onUpdateListener);
-        mTableManager = new TableManager(mConfig.dbName, mHelper.getReadableDatabase());
-        return mHelper.getWritableDatabase();
+        mTableManager = new TableManager(mConfig.dbName, mHelper.getReadableDatabase(), mConfig.lazyTableInfo);
+        SQLiteDatabase db = mHelper.getWritableDatabase();
+        mStatementCache = StatementCache.register(db, mConfig.statementCacheSize);
+        return db;
     }
 
     private void initDatabasePath(String path) {
@@ -203,7 +213,7 @@ public abstract class SQLite extends SQLiteClosable implements DataBase {
                     @SuppressWarnings("unchecked")
                     @Override
                     public int oneSplit(ArrayList<String> list) throws Exception {
-                        SQLStatement stmt = SQLBuilder.buildQueryRelationSql(class1, class2, key1List);
+                        SQLStatement stmt = SQLBuilder.buildQueryRelationSql(class1, class2, list);
                         Querier.doQuery(mHelper.getReadableDatabase(), stmt, new Querier.CursorParser() {
 
                             @Override
@@ -286,7 +296,11 @@ public abstract class SQLite extends SQLiteClosable implements DataBase {
     public boolean dropTable(String tableName) {
         acquireReference();
         try {
-            return SQLBuilder.buildDropTable(tableName).execute(mHelper.getWritableDatabase());
+            SQLiteDatabase db = mHelper.getWritableDatabase();
+            if (SQLBuilder.buildDropTable(tableName).execute(db)) {
+                mTableManager.onTableDropped(db, tableName);
+                return true;
+            }
         } catch (Exception e) {
             e.printStackTrace();
         } finally {
@@ -320,6 +334,86 @@ public abstract class SQLite extends SQLiteClosable implements DataBase {
         return SQLStatement.NONE;
     }
 
+    @Override
+    public <T> void scan(QueryBuilder<T> qb, RowVisitor<T> visitor) {
+        acquireReference();
+        try {
+            if (mTableManager.isSQLTableCreated(qb.getTableName())) {
+                SQLiteDatabase db = mHelper.getReadableDatabase();
+                qb.createStatement().scan(db, qb.getQueryClass(), visitor);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            releaseReference();
+        }
+    }
+
+    @Override
+    public ColumnarResult queryColumnar(QueryBuilder qb) {
+        ColumnarResult result = ColumnarResult.create(qb);
+        acquireReference();
+        try {
+            if (mTableManager.isSQLTableCreated(qb.getTableName())) {
+                SQLiteDatabase db = mHelper.getReadableDatabase();
+                qb.createStatementForColumns(result.getColumns()).queryColumnar(db, result);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            releaseReference();
+        }
+        return result;
+    }
+
+    @Override
+    public long[] queryLongColumn(QueryBuilder qb, String column) {
+        acquireReference();
+        try {
+            if (mTableManager.isSQLTableCreated(qb.getTableName())) {
+                SQLiteDatabase db = mHelper.getReadableDatabase();
+                return qb.createStatementForColumn(column).queryLongColumn(db);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            releaseReference();
+        }
+        return new long[0];
+    }
+
+    @Override
+    public double[] queryDoubleColumn(QueryBuilder qb, String column) {
+        acquireReference();
+        try {
+            if (mTableManager.isSQLTableCreated(qb.getTableName())) {
+                SQLiteDatabase db = mHelper.getReadableDatabase();
+                return qb.createStatementForColumn(column).queryDoubleColumn(db);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            releaseReference();
+        }
+        return new double[0];
+    }
+
+    @Override
+    public String[] queryStringColumn(QueryBuilder qb, String column) {
+        acquireReference();
+        try {
+            if (mTableManager.isSQLTableCreated(qb.getTableName())) {
+                SQLiteDatabase db = mHelper.getReadableDatabase();
+                return qb.createStatementForColumn(column).queryStringColumn(db);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            releaseReference();
+        }
+        return new String[0];
+    }
+
     @Override
     public int update(WhereBuilder where, ColumnsValue cvs, ConflictAlgorithm conflictAlgorithm) {
         acquireReference();
@@ -422,6 +516,10 @@ public abstract class SQLite extends SQLiteClosable implements DataBase {
     }
 
     protected void justRelease() {
+        if (mStatementCache != null) {
+            mStatementCache.unregister();
+            mStatementCache = null;
+        }
         if (mHelper != null) {
             mHelper.getWritableDatabase().close();
             mHelper.close();
@@ -465,6 +563,8 @@ public abstract class SQLite extends SQLiteClosable implements DataBase {
                         throw new RuntimeException(
                                 "OneToMany and ManyToMany Relation, Must use collection or array object");
                     }
+                } else if (mp.lazy) {
+                    itemClass = FieldUtil.getGenericType(mp.field);
                 } else {
                     itemClass = fieldClass;
                 }
@@ -501,7 +601,11 @@ public abstract class SQLite extends SQLiteClosable implements DataBase {
                                     // N对多关系
                                     if (ClassUtil.isCollection(fieldClass)) {
                                         Collection col = (Collection) FieldUtil.get(mp.field, obj1);
-                                        if (col == null) {
+                                        if (col instanceof LazyList) {
+                                            // 懒加载列表只读，替换为普通集合
+                                            col = new ArrayList<Object>();
+                                            FieldUtil.set(mp.field, obj1, col);
+                                        } else if (col == null) {
                                             col = (Collection) fieldClass.newInstance();
                                             FieldUtil.set(mp.field, obj1, col);
                                         }
@@ -510,6 +614,8 @@ public abstract class SQLite extends SQLiteClosable implements DataBase {
                                         throw new RuntimeException(
                                                 "OneToMany and ManyToMany Relation, You must use collection object");
                                     }
+                                } else if (mp.lazy) {
+                                    FieldUtil.set(mp.field, obj1, new LazyToOne<Object>(obj2));
                                 } else {
                                     FieldUtil.set(mp.field, obj1, obj2);
                                 }
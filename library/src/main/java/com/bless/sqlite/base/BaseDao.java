@@ -4,11 +4,16 @@ import android.content.Context;
 
 import com.bless.sqlite.SQLite;
 import com.bless.sqlite.db.DataBaseConfig;
+import com.bless.sqlite.db.assit.ColumnarResult;
+import com.bless.sqlite.db.assit.EntityIterator;
+import com.bless.sqlite.db.assit.PreparedQuery;
 import com.bless.sqlite.db.assit.QueryBuilder;
+import com.bless.sqlite.db.assit.RowVisitor;
 import com.bless.sqlite.db.assit.WhereBuilder;
 import com.bless.sqlite.db.impl.DSQLiteFactory;
 import com.bless.sqlite.db.model.ColumnsValue;
 import com.bless.sqlite.db.model.ConflictAlgorithm;
+import com.bless.sqlite.db.model.Page;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -265,6 +270,90 @@ public abstract class BaseDao<T> {
         return mDSQLiteFactory.query(qb);
     }
 
+    /**
+     * 预编译查询，每次执行只绑定新的参数
+     *
+     * @param pq
+     * @param args
+     * @return 查询结果列表
+     */
+    public ArrayList<T> query(PreparedQuery<T> pq, Object... args) {
+        return mDSQLiteFactory.query(pq, args);
+    }
+
+    /**
+     * 逐行读取的查询结果，未遍历完时需调用 close 释放
+     *
+     * @param qb
+     * @return 可关闭的迭代器
+     */
+    public EntityIterator<T> iterate(QueryBuilder<T> qb) {
+        return mDSQLiteFactory.iterate(qb);
+    }
+
+    /**
+     * 键集分页查询，查询条件需先调用 QueryBuilder.seek 设置分页列
+     *
+     * @param qb
+     * @return 一页数据及下一页的起点
+     */
+    public Page<T> queryPage(QueryBuilder<T> qb) {
+        return mDSQLiteFactory.queryPage(qb);
+    }
+
+    /**
+     * 逐行扫描，所有行共用一个实体对象，不加载关联对象
+     *
+     * @param qb
+     * @param visitor 每行的回调，可调用 stopParse 停止扫描
+     */
+    public void scan(QueryBuilder<T> qb, RowVisitor<T> visitor) {
+        mDSQLiteFactory.scan(qb, visitor);
+    }
+
+    /**
+     * 按列查询，每列读入一个数组，不创建实体对象
+     *
+     * @param qb
+     * @return 按列存储的查询结果
+     */
+    public ColumnarResult queryColumnar(QueryBuilder<T> qb) {
+        return mDSQLiteFactory.queryColumnar(qb);
+    }
+
+    /**
+     * 单列查询，不创建实体对象，NULL 读为0
+     *
+     * @param qb
+     * @param column 列名
+     * @return 查询结果列值
+     */
+    public long[] queryLongColumn(QueryBuilder<T> qb, String column) {
+        return mDSQLiteFactory.queryLongColumn(qb, column);
+    }
+
+    /**
+     * 单列查询，不创建实体对象，NULL 读为0
+     *
+     * @param qb
+     * @param column 列名
+     * @return 查询结果列值
+     */
+    public double[] queryDoubleColumn(QueryBuilder<T> qb, String column) {
+        return mDSQLiteFactory.queryDoubleColumn(qb, column);
+    }
+
+    /**
+     * 单列查询，不创建实体对象
+     *
+     * @param qb
+     * @param column 列名
+     * @return 查询结果列值
+     */
+    public String[] queryStringColumn(QueryBuilder<T> qb, String column) {
+        return mDSQLiteFactory.queryStringColumn(qb, column);
+    }
+
     /**
      * 通过long 类型Id 进行查询
      *
@@ -2,13 +2,18 @@ package com.bless.sqlite.db;
 
 import android.database.sqlite.SQLiteDatabase;
 
+import com.bless.sqlite.db.assit.ColumnarResult;
+import com.bless.sqlite.db.assit.EntityIterator;
+import com.bless.sqlite.db.assit.PreparedQuery;
 import com.bless.sqlite.db.assit.QueryBuilder;
+import com.bless.sqlite.db.assit.RowVisitor;
 import com.bless.sqlite.db.assit.SQLStatement;
 import com.bless.sqlite.db.assit.SQLiteHelper;
 import com.bless.sqlite.db.assit.WhereBuilder;
 import com.bless.sqlite.db.model.ColumnsValue;
 import com.bless.sqlite.db.model.ConflictAlgorithm;
 import com.bless.sqlite.db.model.RelationKey;
+import com.bless.sqlite.db.model.Page;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -182,12 +187,36 @@ public interface DataBase {
     <T> ArrayList<T> query(Class<T> claxx);
 
     /**
-     * custom query
+     * custom query, cascade query only loads the relations in {@link QueryBuilder#getFetchPlan()}
      *
      * @return the query result list
      */
     <T> ArrayList<T> query(QueryBuilder<T> qb);
 
+    /**
+     * query with a prepared query, bind new args each time.
+     *
+     * @param args bind args for the placeholders, use the where args of the builder if empty
+     * @return the query result list
+     */
+    <T> ArrayList<T> query(PreparedQuery<T> pq, Object... args);
+
+    /**
+     * lazy query, map one row at a time from the open cursor.
+     * the iterator must be closed if not iterated to the end.
+     *
+     * @return the closeable iterator of the query result
+     */
+    <T> EntityIterator<T> iterate(QueryBuilder<T> qb);
+
+    /**
+     * keyset pagination query, the builder must be set by {@link QueryBuilder#seek(int, String...)}.
+     * pass {@link Page#getNextKey()} to {@link QueryBuilder#seekAfter(Object...)} to query the next page.
+     *
+     * @return one page of the result and the key of the next page
+     */
+    <T> Page<T> queryPage(QueryBuilder<T> qb);
+
     /**
      * query entity by long id
      *
@@ -216,6 +245,45 @@ public interface DataBase {
      */
     long queryCount(QueryBuilder qb);
 
+    /**
+     * scan the query result row by row, every row is injected into one reused entity
+     * and passed to the visitor. relations are not loaded.
+     * call {@link RowVisitor#stopParse()} to stop the scan.
+     */
+    <T> void scan(QueryBuilder<T> qb, RowVisitor<T> visitor);
+
+    /**
+     * query the columns of the builder (all columns of the entity if not set) into one typed array per column,
+     * no entity is created.
+     *
+     * @return the columnar query result
+     */
+    ColumnarResult queryColumnar(QueryBuilder qb);
+
+    /**
+     * query one column as long values without creating entities, NULL is read as 0.
+     *
+     * @param column the column name, not the field name
+     * @return the column values of query result rows
+     */
+    long[] queryLongColumn(QueryBuilder qb, String column);
+
+    /**
+     * query one column as double values without creating entities, NULL is read as 0.
+     *
+     * @param column the column name, not the field name
+     * @return the column values of query result rows
+     */
+    double[] queryDoubleColumn(QueryBuilder qb, String column);
+
+    /**
+     * query one column as string values without creating entities.
+     *
+     * @param column the column name, not the field name
+     * @return the column values of query result rows
+     */
+    String[] queryStringColumn(QueryBuilder qb, String column);
+
     /**
      * build a sql statement with sql and args.
      */
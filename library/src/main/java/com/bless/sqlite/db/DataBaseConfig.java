@@ -4,6 +4,7 @@ import android.content.Context;
 
 import com.bless.sqlite.db.assit.Checker;
 import com.bless.sqlite.db.assit.SQLiteHelper.OnUpdateListener;
+import com.bless.sqlite.db.assit.StatementCache;
 
 /**
  * 数据操作配置
@@ -18,6 +19,15 @@ public class DataBaseConfig {
     public String dbName = DEFAULT_DB_NAME;
     public int dbVersion = DEFAULT_DB_VERSION;
     public OnUpdateListener onUpdateListener;
+    /**
+     * 已编译sql语句的缓存数量，小于等于0时使用默认值 {@link StatementCache#DEFAULT_MAX_SIZE}
+     */
+    public int statementCacheSize = StatementCache.DEFAULT_MAX_SIZE;
+    /**
+     * 打开数据库时只读取表名，表的列信息在首次检查该表时才读取。
+     * 表很多时可以明显缩短打开时间，设为false则打开时读取全部表的列信息
+     */
+    public boolean lazyTableInfo = true;
 
     public DataBaseConfig(Context context) {
         this(context, DEFAULT_DB_NAME);
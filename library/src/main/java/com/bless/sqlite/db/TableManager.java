@@ -8,10 +8,14 @@ import com.bless.sqlite.db.annotation.Mapping;
 import com.bless.sqlite.db.annotation.PrimaryKey;
 import com.bless.sqlite.db.annotation.Table;
 import com.bless.sqlite.db.assit.Checker;
+import com.bless.sqlite.db.assit.EntityAdapters;
+import com.bless.sqlite.db.assit.EntityIndex;
 import com.bless.sqlite.db.assit.Querier;
 import com.bless.sqlite.db.assit.SQLStatement;
 import com.bless.sqlite.db.assit.Transaction;
 import com.bless.sqlite.db.model.EntityTable;
+import com.bless.sqlite.db.model.LazyList;
+import com.bless.sqlite.db.model.LazyToOne;
 import com.bless.sqlite.db.model.MapProperty;
 import com.bless.sqlite.db.model.Primarykey;
 import com.bless.sqlite.db.model.Property;
@@ -26,9 +30,12 @@ import com.bless.sqlite.log.Log;
 
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 表管理
@@ -41,24 +48,70 @@ public final class TableManager {
      * 数据库表信息
      */
     private String dbName = "";
+    /**
+     * 是否延迟读取表的列信息
+     */
+    private final boolean lazyColumns;
     /**
      * 这里放的是数据库表信息（表名、字段、建表语句...）
      * 每个数据库对应一个
      * key : Class Name
      * value: {@link EntityTable}
      */
-    private final HashMap<String, SQLiteTable> mSqlTableMap = new HashMap<String, SQLiteTable>();
+    private final ConcurrentHashMap<String, SQLiteTable> mSqlTableMap = new ConcurrentHashMap<String, SQLiteTable>();
+
+    /**
+     * 已保存的实体表结构指纹，key : 表名
+     * 指纹与当前实体一致的表不再读取列信息、不再比较新列
+     */
+    private final HashMap<String, Long> mFingerprintMap = new HashMap<String, Long>();
+
+    /**
+     * 等待升级的旧版本映射表，key : 映射表名，value: 两个实体表
+     * 在调用方事务中发现的旧表先记录下来，事务结束后再升级
+     */
+    private final ConcurrentHashMap<String, EntityTable[]> mPendingMappingUpgrades
+            = new ConcurrentHashMap<String, EntityTable[]>();
+
+    /**
+     * 当前 SQLite 是否支持 WITHOUT ROWID 表，首次建映射表时检测
+     */
+    private Boolean withoutRowId;
 
     /**
      * 这里放的是类的实体信息表（主键、属性、关系映射...）
-     * 全局单例
+     * 全局单例，读取不加锁，每个类只在首次获取时加锁解析一次
      * key : Class Name
      * value: {@link EntityTable}
      */
-    private final static HashMap<String, EntityTable> mEntityTableMap = new HashMap<String, EntityTable>();
+    private final static ConcurrentHashMap<String, EntityTable> mEntityTableMap
+            = new ConcurrentHashMap<String, EntityTable>();
+
+    /**
+     * 编译期生成的实体索引，默认索引在类加载时一次性载入
+     */
+    private final static ArrayList<EntityIndex> mEntityIndexes = new ArrayList<EntityIndex>();
+
+    static {
+        try {
+            mEntityIndexes.add((EntityIndex) Class.forName(EntityIndex.DEFAULT_NAME).newInstance());
+        } catch (ClassNotFoundException e) {
+            // 没有使用注解处理器，全部实体使用反射解析
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
 
     public TableManager(String dbName, SQLiteDatabase db) {
+        this(dbName, db, false);
+    }
+
+    /**
+     * @param lazyColumns 为true时初始化只读取表名，表的列信息在首次检查该表时读取
+     */
+    public TableManager(String dbName, SQLiteDatabase db, boolean lazyColumns) {
         this.dbName = dbName;
+        this.lazyColumns = lazyColumns;
         initSqlTable(db);
     }
 
@@ -70,6 +123,8 @@ public final class TableManager {
     public void clearSqlTable() {
         synchronized (mSqlTableMap) {
             mSqlTableMap.clear();
+            mFingerprintMap.clear();
+            mPendingMappingUpgrades.clear();
         }
     }
 
@@ -90,33 +145,84 @@ public final class TableManager {
 
     /**
      * 检测[数据库表]是否建立，没有则建一张新表。
+     * 已检查过的表直接返回，不加锁；只有首次遇到的表才加锁检查或建表。
      */
-    public synchronized EntityTable checkOrCreateTable(SQLiteDatabase db, Class claxx) {
+    public EntityTable checkOrCreateTable(SQLiteDatabase db, Class claxx) {
         // 关键点1：获取[实体表]
         EntityTable table = getTable(claxx);
-        // 关键点2: 判断[数据库表]是否存在，是否需要新加列。
-        if (!checkExistAndColumns(db, table)) {
-            // 关键点3：新建[数据库表]并加入表队列
-            if (createTable(db, table)) {
-                putNewSqlTableIntoMap(table);
+        if (isTableChecked(table.name)) {
+            return table;
+        }
+        synchronized (this) {
+            // 关键点2: 判断[数据库表]是否存在，是否需要新加列。
+            if (!checkExistAndColumns(db, table)) {
+                // 关键点3：新建[数据库表]并加入表队列
+                if (createTable(db, table)) {
+                    putNewSqlTableIntoMap(db, table);
+                }
             }
         }
         return table;
     }
 
+    /**
+     * 表是否存在且已检查完毕
+     */
+    private boolean isTableChecked(String tableName) {
+        SQLiteTable sqlTable = mSqlTableMap.get(tableName);
+        return sqlTable != null && sqlTable.isTableChecked;
+    }
+
+
+    /**
+     * 检测[映射表]是否建立，没有则按两个实体的主键类型建一张新表，旧版本建立的映射表原地升级。
+     *
+     * @see SQLBuilder#buildCreateMappingTable(String, EntityTable, EntityTable, boolean)
+     */
+    public void checkOrCreateMappingTable(SQLiteDatabase db, EntityTable table1, EntityTable table2) {
+        String tableName = getMapTableName(table1, table2);
+        SQLiteTable checked = mSqlTableMap.get(tableName);
+        if (checked != null && checked.isTableChecked && checked.isMappingChecked) {
+            return;
+        }
+        synchronized (this) {
+            EntityTable table = getMappingTable(tableName, table1.name, table2.name);
+            SQLiteTable sqlTable = mSqlTableMap.get(tableName);
+            if (sqlTable != null && !sqlTable.isMappingChecked) {
+                if (db.inTransaction()) {
+                    // 升级失败会连带回滚调用方的事务，等事务结束后再升级，旧表仍可读写
+                    mPendingMappingUpgrades.put(tableName, new EntityTable[]{table1, table2});
+                } else {
+                    upgradeMappingTableIfNeed(db, sqlTable, table1, table2);
+                }
+            }
+            if (!checkExistAndColumns(db, table)) {
+                if (createMappingTable(db, tableName, table1, table2)) {
+                    putNewSqlTableIntoMap(db, table);
+                }
+            }
+        }
+    }
 
     /**
      * 检测[映射表]是否建立，没有则建一张新表。
+     * 两列均为 TEXT，不知道实体主键类型时使用，见 {@link #checkOrCreateMappingTable(SQLiteDatabase, EntityTable,
+     * EntityTable)}
      */
-    public synchronized void checkOrCreateMappingTable(SQLiteDatabase db, String tableName,
+    public void checkOrCreateMappingTable(SQLiteDatabase db, String tableName,
             String column1, String column2) {
-        // 关键点1：获取[实体表]
-        EntityTable table = getMappingTable(tableName, column1, column2);
-        // 关键点2: 判断[数据库表]是否存在，是否需要新加列。
-        if (!checkExistAndColumns(db, table)) {
-            // 关键点3：新建[数据库表]并加入表队列
-            if (createTable(db, table)) {
-                putNewSqlTableIntoMap(table);
+        if (isTableChecked(tableName)) {
+            return;
+        }
+        synchronized (this) {
+            // 关键点1：获取[实体表]
+            EntityTable table = getMappingTable(tableName, column1, column2);
+            // 关键点2: 判断[数据库表]是否存在，是否需要新加列。
+            if (!checkExistAndColumns(db, table)) {
+                // 关键点3：新建[数据库表]并加入表队列
+                if (createTable(db, table)) {
+                    putNewSqlTableIntoMap(db, table);
+                }
             }
         }
     }
@@ -128,6 +234,134 @@ public final class TableManager {
         return mSqlTableMap.get(getMapTableName(tableName1, tableName2)) != null;
     }
 
+    /**
+     * 升级写入时发现的旧版本映射表，在调用方事务之外执行，仍在事务中时什么都不做
+     *
+     * @see #checkOrCreateMappingTable(SQLiteDatabase, EntityTable, EntityTable)
+     */
+    public void upgradePendingMappingTables(SQLiteDatabase db) {
+        if (mPendingMappingUpgrades.isEmpty() || db.inTransaction()) {
+            return;
+        }
+        synchronized (this) {
+            for (String tableName : new ArrayList<String>(mPendingMappingUpgrades.keySet())) {
+                EntityTable[] tables = mPendingMappingUpgrades.remove(tableName);
+                SQLiteTable sqlTable = mSqlTableMap.get(tableName);
+                if (tables != null && sqlTable != null) {
+                    upgradeMappingTableIfNeed(db, sqlTable, tables[0], tables[1]);
+                }
+            }
+        }
+    }
+
+    /**
+     * 旧版本的映射表是两个 TEXT 列，没有主键和索引，每次查找关系都要全表扫描。
+     * 升级为联合主键、列类型与实体主键一致的新表，并建立反向索引：
+     * 在一个独立事务中建新表、复制数据(丢弃重复关系)、删除旧表、新表改名。
+     * 只在写入路径、调用方事务之外升级，读取路径不升级(旧表仍可查询)。
+     * 升级失败时只回滚升级本身，本次打开数据库期间不再重试。
+     */
+    private void upgradeMappingTableIfNeed(SQLiteDatabase db, SQLiteTable sqlTable, final EntityTable table1,
+            final EntityTable table2) {
+        if (sqlTable.isMappingChecked) {
+            return;
+        }
+        if (sqlTable.sql == null || sqlTable.sql.toUpperCase().contains("PRIMARY KEY")) {
+            sqlTable.isMappingChecked = true;
+            return;
+        }
+        final String tableName = sqlTable.name;
+        final String tempName = tableName + "_upgrade";
+        final boolean withoutRowId = isWithoutRowIdSupported(db);
+        if (Log.isPrint) {
+            Log.i(TAG, "Mapping table [" + tableName + "] upgrade start");
+        }
+        Boolean ok = Transaction.execute(db, new Transaction.Worker<Boolean>() {
+            @Override
+            public Boolean doTransaction(SQLiteDatabase db) throws Exception {
+                // 上次中断留下的临时表，不存在时失败可忽略
+                SQLBuilder.buildDropTable(tempName).execute(db);
+                // 任何一步失败都抛出异常回滚事务，避免留下半升级的表
+                upgradeStep(db, SQLBuilder.buildCreateMappingTable(tempName, table1, table2, withoutRowId));
+                upgradeStep(db, SQLBuilder.buildCopyMappingSql(tableName, tempName, table1.name, table2.name));
+                upgradeStep(db, SQLBuilder.buildDropTable(tableName));
+                upgradeStep(db, SQLBuilder.buildRenameTable(tempName, tableName));
+                upgradeStep(db, SQLBuilder.buildCreateMappingIndex(tableName, table1, table2));
+                return true;
+            }
+        });
+        if (ok != null && ok) {
+            String ddl = readTableSql(db, tableName);
+            sqlTable.sql = ddl != null ? ddl
+                                       : SQLBuilder.buildCreateMappingTable(tableName, table1, table2, withoutRowId).sql;
+        }
+        // 失败时(如有未关闭的查询)旧表仍可用，不在每次写入时重试，下次打开数据库再升级
+        sqlTable.isMappingChecked = true;
+        if (Log.isPrint) {
+            Log.i(TAG, "Mapping table [" + tableName + "] upgrade " + (ok != null && ok ? "success" : "failed"));
+        }
+    }
+
+    private static void upgradeStep(SQLiteDatabase db, SQLStatement stmt) {
+        if (!stmt.execute(db)) {
+            throw new RuntimeException("mapping table upgrade failed: " + stmt.sql);
+        }
+    }
+
+    /**
+     * 建立新的映射表及其反向索引
+     */
+    private boolean createMappingTable(SQLiteDatabase db, final String tableName, final EntityTable table1,
+            final EntityTable table2) {
+        final boolean withoutRowId = isWithoutRowIdSupported(db);
+        Boolean ok = Transaction.execute(db, new Transaction.Worker<Boolean>() {
+            @Override
+            public Boolean doTransaction(SQLiteDatabase db) throws Exception {
+                return SQLBuilder.buildCreateMappingTable(tableName, table1, table2, withoutRowId).execute(db)
+                       && SQLBuilder.buildCreateMappingIndex(tableName, table1, table2).execute(db);
+            }
+        });
+        return ok != null && ok;
+    }
+
+    /**
+     * WITHOUT ROWID 需要 SQLite 3.8.2 (Android 5.0)以上
+     */
+    private boolean isWithoutRowIdSupported(SQLiteDatabase db) {
+        if (withoutRowId == null) {
+            final String[] version = new String[1];
+            Querier.doQuery(db, new SQLStatement(SQLBuilder.SELECT_VERSION, null), new Querier.CursorParser() {
+                @Override
+                public void parseEachCursor(SQLiteDatabase db, Cursor c) throws Exception {
+                    version[0] = c.getString(0);
+                }
+            });
+            withoutRowId = compareVersion(version[0], 3, 8, 2) >= 0;
+        }
+        return withoutRowId;
+    }
+
+    private static int compareVersion(String version, int... target) {
+        if (version == null) {
+            return -1;
+        }
+        String[] parts = version.split("\\.");
+        for (int i = 0; i < target.length; i++) {
+            int v = 0;
+            if (i < parts.length) {
+                try {
+                    v = Integer.parseInt(parts[i].trim());
+                } catch (NumberFormatException e) {
+                    return -1;
+                }
+            }
+            if (v != target[i]) {
+                return v < target[i] ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
     /**
      * 仅仅检测[数据库表]是否建立
      */
@@ -148,13 +382,23 @@ public final class TableManager {
                 Log.d(TAG, "Table [" + entityTable.name + "] Exist");
             }
             if (!sqlTable.isTableChecked) {
-                // 表仅进行一次检查，检验是否有新字段加入。
-                sqlTable.isTableChecked = true;
+                // 表仅进行一次检查，检验是否有新字段加入，检查完成后才标记，其他线程看到标记时新列已加入。
+                // 结构指纹未变，上次检查后实体及数据库中的表都没有改动，不需要再比较
+                long fingerprint = fingerprint(entityTable, sqlTable.sql);
+                Long saved = mFingerprintMap.get(entityTable.name);
+                if (saved != null && saved == fingerprint) {
+                    if (Log.isPrint) {
+                        Log.d(TAG, "Table [" + entityTable.name + "] fingerprint matched, skip column check.");
+                    }
+                    sqlTable.isTableChecked = true;
+                    return true;
+                }
                 if (Log.isPrint) {
                     Log.i(TAG, "Table [" + entityTable.name + "] check column now.");
                 }
+                HashMap<String, Integer> columns = getColumns(db, sqlTable);
                 if (entityTable.key != null) {
-                    if (sqlTable.columns.get(entityTable.key.column) == null) {
+                    if (columns.get(entityTable.key.column) == null) {
                         SQLStatement stmt = SQLBuilder.buildDropTable(sqlTable.name);
                         stmt.execute(db);
                         if (Log.isPrint) {
@@ -164,18 +408,20 @@ public final class TableManager {
                         return false;
                     }
                 }
+                boolean columnsOk = true;
                 if (entityTable.pmap != null) {
                     ArrayList<String> newColumns = new ArrayList<String>();
                     for (String col : entityTable.pmap.keySet()) {
-                        if (sqlTable.columns.get(col) == null) {
+                        if (columns.get(col) == null) {
                             newColumns.add(col);
                         }
                     }
                     if (!Checker.isEmpty(newColumns)) {
                         for (String col : newColumns) {
-                            sqlTable.columns.put(col, 1);
+                            columns.put(col, 1);
                         }
                         int sum = insertNewColunms(db, entityTable.name, newColumns);
+                        columnsOk = sum > 0;
                         if (Log.isPrint) {
                             if (sum > 0) {
                                 Log.i(TAG,
@@ -188,6 +434,10 @@ public final class TableManager {
                         }
                     }
                 }
+                if (columnsOk) {
+                    saveFingerprint(db, entityTable);
+                }
+                sqlTable.isTableChecked = true;
             }
             return true;
         }
@@ -200,7 +450,7 @@ public final class TableManager {
     /**
      * 将Sql Table放入存储集合
      */
-    private void putNewSqlTableIntoMap(EntityTable table) {
+    private void putNewSqlTableIntoMap(SQLiteDatabase db, EntityTable table) {
         if (Log.isPrint) {
             Log.i(TAG, "Table [" + table.name + "] Create Success");
         }
@@ -217,11 +467,179 @@ public final class TableManager {
         }
         // 第一次建表，不用检查
         sqlTable.isTableChecked = true;
+        sqlTable.isMappingChecked = true;
         mSqlTableMap.put(sqlTable.name, sqlTable);
+        saveFingerprint(db, table);
+    }
+
+    /**
+     * 表结构指纹，包括实体定义及数据库中实际的建表语句(sqlite_master.sql，ALTER 后会变)，
+     * 表在 TableManager 之外被改动或重建时指纹不再匹配
+     */
+    static long fingerprint(EntityTable table, String ddl) {
+        return fnv(fingerprint(table), ddl);
+    }
+
+    /**
+     * 实体表结构指纹：表名、主键(列名、类型、赋值方式)、全部列名及类型，与列的顺序无关
+     */
+    static long fingerprint(EntityTable table) {
+        // FNV-1a 64
+        long h = 0xcbf29ce484222325L;
+        h = fnv(h, table.name);
+        if (table.key != null) {
+            h = fnv(h, table.key.column);
+            h = fnv(h, DataUtil.getSQLDataType(table.key.classType > 0 ? table.key.classType
+                                                                       : DataUtil.getFieldClassType(table.key.field)));
+            h = fnv(h, String.valueOf(table.key.assign));
+        }
+        if (table.pmap != null) {
+            long cols = 0;
+            for (Map.Entry<String, Property> en : table.pmap.entrySet()) {
+                long c = fnv(0xcbf29ce484222325L, en.getKey());
+                Property p = en.getValue();
+                if (p != null) {
+                    c = fnv(c, DataUtil.getSQLDataType(p.classType > 0 ? p.classType
+                                                                       : DataUtil.getFieldClassType(p.field)));
+                }
+                // 各列指纹相加，与顺序无关
+                cols += c;
+            }
+            h = fnv(h, String.valueOf(cols));
+        }
+        return h;
+    }
+
+    private static long fnv(long h, String s) {
+        if (s != null) {
+            for (int i = 0, len = s.length(); i < len; i++) {
+                h ^= s.charAt(i);
+                h *= 0x100000001b3L;
+            }
+        }
+        // 分隔符
+        h ^= 0xff;
+        h *= 0x100000001b3L;
+        return h;
+    }
+
+    /**
+     * 保存表结构指纹，建表语句从 sqlite_master 重新读取，数据库只读时跳过
+     */
+    private void saveFingerprint(SQLiteDatabase db, EntityTable table) {
+        if (db.isReadOnly()) {
+            return;
+        }
+        String tableName = table.name;
+        String ddl = readTableSql(db, tableName);
+        if (ddl == null) {
+            return;
+        }
+        long fingerprint = fingerprint(table, ddl);
+        Long saved = mFingerprintMap.get(tableName);
+        if (saved != null && saved == fingerprint) {
+            return;
+        }
+        if (mSqlTableMap.get(SQLBuilder.SCHEMA_TABLE) == null) {
+            if (!SQLBuilder.buildCreateSchemaTable().execute(db)) {
+                return;
+            }
+            SQLiteTable sqlTable = new SQLiteTable();
+            sqlTable.name = SQLBuilder.SCHEMA_TABLE;
+            sqlTable.isTableChecked = true;
+            sqlTable.isMappingChecked = true;
+            mSqlTableMap.put(sqlTable.name, sqlTable);
+        }
+        if (SQLBuilder.buildSaveSchemaFingerprint(tableName, fingerprint).execute(db)) {
+            mFingerprintMap.put(tableName, fingerprint);
+        }
+    }
+
+    /**
+     * 表被删除：移除表信息及其结构指纹
+     */
+    public synchronized void onTableDropped(SQLiteDatabase db, String tableName) {
+        mSqlTableMap.remove(tableName);
+        mFingerprintMap.remove(tableName);
+        if (mSqlTableMap.get(SQLBuilder.SCHEMA_TABLE) != null) {
+            SQLBuilder.buildDeleteSchemaFingerprint(tableName).execute(db);
+        }
+    }
+
+    /**
+     * 读取数据库中一张表的建表语句
+     */
+    private String readTableSql(SQLiteDatabase db, String tableName) {
+        final String[] sql = new String[1];
+        Querier.doQuery(db, SQLBuilder.buildQueryTableSql(tableName), new Querier.CursorParser() {
+            @Override
+            public void parseEachCursor(SQLiteDatabase db, Cursor c) throws Exception {
+                sql[0] = c.getString(0);
+                stopParse();
+            }
+        });
+        return sql[0];
+    }
+
+    /**
+     * 读取已保存的全部表结构指纹
+     */
+    private void initFingerprints(SQLiteDatabase db) {
+        if (mSqlTableMap.get(SQLBuilder.SCHEMA_TABLE) == null) {
+            return;
+        }
+        Querier.doQuery(db, SQLBuilder.buildQuerySchemaFingerprints(), new Querier.CursorParser() {
+            @Override
+            public void parseEachCursor(SQLiteDatabase db, Cursor c) throws Exception {
+                if (!c.isNull(0) && !c.isNull(1)) {
+                    mFingerprintMap.put(c.getString(0), c.getLong(1));
+                }
+            }
+        });
+    }
+
+    /**
+     * 表的列名，延迟模式下首次调用时读取，多个线程同时首次访问同一张表时只读取一次
+     */
+    private HashMap<String, Integer> getColumns(SQLiteDatabase db, SQLiteTable sqlTable) {
+        HashMap<String, Integer> columns = sqlTable.columns;
+        if (columns == null) {
+            synchronized (sqlTable) {
+                columns = sqlTable.columns;
+                if (columns == null) {
+                    columns = readColumns(db, sqlTable);
+                    sqlTable.columns = columns;
+                }
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * 读取一张表的列名，读数据库失败时解析建表语句
+     */
+    private HashMap<String, Integer> readColumns(SQLiteDatabase db, SQLiteTable sqlTable) {
+        ArrayList<String> colS = getAllColumnsFromSQLite(db, sqlTable.name);
+        if (Checker.isEmpty(colS)) {
+            // 如果读数据库失败了，那么解析建表语句
+            Log.e(TAG, "读数据库失败了，开始解析建表语句");
+            colS = transformSqlToColumns(sqlTable.sql);
+        }
+        HashMap<String, Integer> columns = new HashMap<String, Integer>();
+        if (colS != null) {
+            for (String col : colS) {
+                columns.put(col, 1);
+            }
+        }
+        if (Log.isPrint) {
+            Log.i(TAG, "Table [" + sqlTable.name + "] Column: " + colS);
+        }
+        return columns;
     }
 
     /**
      * 初始化全部表及其列名,初始化失败，则无法进行下去。
+     * 延迟模式下只读取 sqlite_master 中的表名及建表语句，列名在首次检查该表时读取。
      */
     private void initAllTablesFromSQLite(SQLiteDatabase db) {
         synchronized (mSqlTableMap) {
@@ -236,23 +654,16 @@ public final class TableManager {
                     public void parseEachCursor(SQLiteDatabase db, Cursor c) throws Exception {
                         SQLiteTable sqlTable = new SQLiteTable();
                         DataUtil.injectDataToObject(c, sqlTable, table);
-                        ArrayList<String> colS = getAllColumnsFromSQLite(db, sqlTable.name);
-                        if (Checker.isEmpty(colS)) {
-                            // 如果读数据库失败了，那么解析建表语句
-                            Log.e(TAG, "读数据库失败了，开始解析建表语句");
-                            colS = transformSqlToColumns(sqlTable.sql);
-                        }
-                        sqlTable.columns = new HashMap<String, Integer>();
-                        for (String col : colS) {
-                            sqlTable.columns.put(col, 1);
+                        if (!lazyColumns) {
+                            sqlTable.columns = readColumns(db, sqlTable);
                         }
                         if (Log.isPrint) {
                             Log.i(TAG, "Find One SQL Table: " + sqlTable);
-                            Log.i(TAG, "Table Column: " + colS);
                         }
                         mSqlTableMap.put(sqlTable.name, sqlTable);
                     }
                 });
+                initFingerprints(db);
                 if (Log.isPrint) {
                     Log.i(TAG, "Initialize SQL table end  ---------------------> " + mSqlTableMap.size());
                 }
@@ -367,7 +778,10 @@ public final class TableManager {
             table.pmap = new LinkedHashMap<String, Property>();
             table.pmap.put(column1, null);
             table.pmap.put(column2, null);
-            TableManager.putEntityTable(dbName + tableName, table);
+            EntityTable old = mEntityTableMap.putIfAbsent(dbName + tableName, table);
+            if (old != null) {
+                table = old;
+            }
         }
         return table;
     }
@@ -393,75 +807,147 @@ public final class TableManager {
      *
      * @return {@link EntityTable}
      */
-    public static synchronized EntityTable getTable(Class<?> claxx, boolean needPK) {
+    public static EntityTable getTable(Class<?> claxx, boolean needPK) {
+        EntityTable table = getEntityTable(claxx.getName());
+        if (table != null) {
+            return table;
+        }
+        return buildTable(claxx, needPK);
+    }
+
+    /**
+     * 首次获取时解析实体表，每个类只解析一次，解析完成后才放入缓存
+     */
+    private static synchronized EntityTable buildTable(Class<?> claxx, boolean needPK) {
         EntityTable table = getEntityTable(claxx.getName());
         //if(OrmLog.isPrint)OrmLog.i(TAG, "table : " + table + "  , claxx: " + claxx);
         if (table == null) {
-            table = new EntityTable();
-            table.claxx = claxx;
-            table.name = getTableName(claxx);
-            table.pmap = new LinkedHashMap<String, Property>();
-            List<Field> fields = FieldUtil.getAllDeclaredFields(claxx);
-            for (Field f : fields) {
-                if (FieldUtil.isInvalid(f)) {
-                    continue;
+            table = getTableFromIndex(claxx);
+            if (table == null) {
+                table = reflectTable(claxx);
+            }
+            if (needPK && table.key == null) {
+                throw new RuntimeException(
+                        "你必须为[" + table.claxx.getSimpleName() + "]设置主键(you must set the primary key...)" +
+                        "\n 提示：在对象的属性上加PrimaryKey注解来设置主键。");
+            }
+            table.adapter = EntityAdapters.load(table);
+            putEntityTable(claxx.getName(), table);
+        }
+        return table;
+    }
+
+    /**
+     * 注册其他模块生成的实体索引(处理器参数 blessSqlite.index 指定了非默认类名时)
+     */
+    public static synchronized void registerIndex(EntityIndex index) {
+        if (!mEntityIndexes.contains(index)) {
+            mEntityIndexes.add(index);
+        }
+    }
+
+    /**
+     * 从编译期生成的索引中获取实体表
+     */
+    private static EntityTable getTableFromIndex(Class<?> claxx) {
+        for (EntityIndex index : mEntityIndexes) {
+            try {
+                EntityTable table = index.createTable(claxx);
+                if (table != null) {
+                    return table;
                 }
-                // 获取列名,每个属性都有，没有注解默认取属性名
-                Column col = f.getAnnotation(Column.class);
-                String column = col != null ? col.value() : f.getName();
-                Property p = new Property(column, f);
-
-                // 主键判断
-                PrimaryKey key = f.getAnnotation(PrimaryKey.class);
-                if (key != null) {
-                    // 主键不加入属性Map
-                    table.key = new Primarykey(p, key.value());
-                    // 主键为系统分配,对类型有要求
-                    checkPrimaryKey(table.key);
+            } catch (NoSuchFieldException e) {
+                // 索引与类不一致(未重新编译)，回退到反射
+                e.printStackTrace();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 反射解析实体表
+     */
+    private static EntityTable reflectTable(Class<?> claxx) {
+        EntityTable table = new EntityTable();
+        table.claxx = claxx;
+        table.name = getTableName(claxx);
+        table.pmap = new LinkedHashMap<String, Property>();
+        List<Field> fields = FieldUtil.getAllDeclaredFields(claxx);
+        for (Field f : fields) {
+            if (FieldUtil.isInvalid(f)) {
+                continue;
+            }
+            // 获取列名,每个属性都有，没有注解默认取属性名
+            Column col = f.getAnnotation(Column.class);
+            String column = col != null ? col.value() : f.getName();
+            Property p = new Property(column, f);
+
+            // 主键判断
+            PrimaryKey key = f.getAnnotation(PrimaryKey.class);
+            if (key != null) {
+                // 主键不加入属性Map
+                table.key = new Primarykey(p, key.value());
+                // 主键为系统分配,对类型有要求
+                checkPrimaryKey(table.key);
+            } else {
+                //ORM handle
+                Mapping mapping = f.getAnnotation(Mapping.class);
+                if (mapping != null) {
+                    MapProperty mp = new MapProperty(p, mapping.value(), mapping.lazy());
+                    checkMapping(mp);
+                    table.addMapping(mp);
                 } else {
-                    //ORM handle
-                    Mapping mapping = f.getAnnotation(Mapping.class);
-                    if (mapping != null) {
-                        table.addMapping(new MapProperty(p, mapping.value()));
-                    } else {
-                        table.pmap.put(p.column, p);
-                    }
+                    table.pmap.put(p.column, p);
                 }
             }
-            if (table.key == null) {
-                for (String col : table.pmap.keySet()) {
-                    for (String id : ID) {
-                        if (id.equalsIgnoreCase(col)) {
-                            Property p = table.pmap.get(col);
-                            if (p.field.getType() == String.class) {
-                                // 主键移除属性Map
-                                table.pmap.remove(col);
-                                table.key = new Primarykey(p, AssignType.CUSTOM_ASSIGN);
-                                break;
-                            } else if (FieldUtil.isNumber(p.field.getType())) {
-                                // 主键移除属性Map
-                                table.pmap.remove(col);
-                                table.key = new Primarykey(p, AssignType.AUTO_INCREMENT);
-                                break;
-                            }
-
+        }
+        if (table.key == null) {
+            for (String col : table.pmap.keySet()) {
+                for (String id : ID) {
+                    if (id.equalsIgnoreCase(col)) {
+                        Property p = table.pmap.get(col);
+                        if (p.field.getType() == String.class) {
+                            // 主键移除属性Map
+                            table.pmap.remove(col);
+                            table.key = new Primarykey(p, AssignType.CUSTOM_ASSIGN);
+                            break;
+                        } else if (FieldUtil.isNumber(p.field.getType())) {
+                            // 主键移除属性Map
+                            table.pmap.remove(col);
+                            table.key = new Primarykey(p, AssignType.AUTO_INCREMENT);
+                            break;
                         }
-                    }
-                    if (table.key != null) {
-                        break;
+
                     }
                 }
+                if (table.key != null) {
+                    break;
+                }
             }
-            if (needPK && table.key == null) {
-                throw new RuntimeException(
-                        "你必须为[" + table.claxx.getSimpleName() + "]设置主键(you must set the primary key...)" +
-                        "\n 提示：在对象的属性上加PrimaryKey注解来设置主键。");
-            }
-            putEntityTable(claxx.getName(), table);
         }
         return table;
     }
 
+    /**
+     * 懒加载的关联属性对类型有要求
+     */
+    private static void checkMapping(MapProperty mp) {
+        if (!mp.lazy) {
+            return;
+        }
+        if (mp.isToOne() && mp.field.getType() != LazyToOne.class) {
+            throw new RuntimeException(
+                    mp.field.getName() + " lazy ToOne mapping must be LazyToOne type ...\n " +
+                    "错误提示：懒加载N对一关联属性类型须为LazyToOne");
+        }
+        Class<?> type = mp.field.getType();
+        if (mp.isToMany() && !(Collection.class.isAssignableFrom(type) && type.isAssignableFrom(LazyList.class))) {
+            throw new RuntimeException(
+                    mp.field.getName() + " lazy ToMany mapping must be List or Collection type ...\n " +
+                    "错误提示：懒加载N对多关联属性类型须为List或Collection");
+        }
+    }
+
     private static void checkPrimaryKey(Primarykey key) {
         if (key.isAssignedBySystem()) {
             if (!FieldUtil.isNumber(key.field.getType())) {
@@ -15,4 +15,11 @@ import java.lang.annotation.Target;
 @Retention(RetentionPolicy.RUNTIME)
 public @interface Mapping {
 	Relation value();
+
+	/**
+	 * 懒加载，级联查询时不加载关联实体，首次访问时才查询。
+	 * N对一关系的属性类型须为 {@link com.bless.sqlite.db.model.LazyToOne}；
+	 * N对多关系的属性类型须为 List 或 Collection，注入按页读取的 {@link com.bless.sqlite.db.model.LazyList}
+	 */
+	boolean lazy() default false;
 }
@@ -0,0 +1,239 @@
+package com.bless.sqlite.db.assit;
+
+import android.database.Cursor;
+
+import com.bless.sqlite.db.model.EntityTable;
+import com.bless.sqlite.db.utils.DataUtil;
+import com.bless.sqlite.db.utils.FieldUtil;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+/**
+ * 一次级联操作(保存、更新、删除或查询)的遍历记录。
+ * <p>
+ * <ol>
+ * <li>已处理的实体按对象身份记录，用于打断循环关联</li>
+ * <li>已加载的实体按表、主键记录，保证同一主键只有一个实例：整数主键用 long 直接做key，不装箱；其他主键用字符串</li>
+ * </ol>
+ * 记录过程不拼接字符串，保存上万个实体的关联图时不再产生大量临时对象。对象不是线程安全的，只在一次级联操作中使用。
+ */
+public final class CascadeContext {
+    /**
+     * 查询过但不存在的实体
+     */
+    private static final Object MISSING = new Object();
+
+    private final IdentityHashMap<Object, Object> visited = new IdentityHashMap<Object, Object>();
+    private HashMap<Object, IdentityHashMap<Object, Object>> scopedVisited;
+    private HashMap<EntityTable, Entities> entities;
+
+    /**
+     * 标记实体已处理
+     *
+     * @return 首次处理返回true，已处理过返回false
+     */
+    public boolean visit(Object entity) {
+        return visited.put(entity, Boolean.TRUE) == null;
+    }
+
+    /**
+     * 在 scope 内标记实体已处理，同一实体在不同 scope 中分别记录(如加载计划的不同节点)
+     *
+     * @return 在 scope 内首次处理返回true，已处理过返回false
+     */
+    public boolean visit(Object entity, Object scope) {
+        if (scopedVisited == null) {
+            scopedVisited = new HashMap<Object, IdentityHashMap<Object, Object>>();
+        }
+        IdentityHashMap<Object, Object> set = scopedVisited.get(scope);
+        if (set == null) {
+            set = new IdentityHashMap<Object, Object>();
+            scopedVisited.put(scope, set);
+        }
+        return set.put(entity, Boolean.TRUE) == null;
+    }
+
+    /**
+     * 记录已加载的实体，key取自实体的主键
+     */
+    public void putEntity(EntityTable table, Object entity) throws IllegalAccessException {
+        Entities es = entities(table);
+        Object key = FieldUtil.get(table.key.field, entity);
+        if (key == null) {
+            return;
+        }
+        if (es.longMap != null) {
+            es.longMap.put(((Number) key).longValue(), entity);
+        } else {
+            es.stringMap.put(String.valueOf(key), entity);
+        }
+    }
+
+    /**
+     * 记录查询过但不存在的实体，之后不再查询
+     */
+    public void putMissing(EntityTable table, Object key) {
+        Entities es = entities(table);
+        if (es.longMap != null) {
+            long k = toLong(key);
+            if (!es.longMap.containsKey(k)) {
+                es.longMap.put(k, MISSING);
+            }
+        } else {
+            String k = String.valueOf(key);
+            if (!es.stringMap.containsKey(k)) {
+                es.stringMap.put(k, MISSING);
+            }
+        }
+    }
+
+    /**
+     * 实体是否已加载或已确认不存在
+     */
+    public boolean containsEntity(EntityTable table, Object key) {
+        Entities es = entities(table);
+        return es.longMap != null ? es.longMap.containsKey(toLong(key)) : es.stringMap.containsKey(String.valueOf(key));
+    }
+
+    public boolean containsEntity(EntityTable table, long key) {
+        Entities es = entities(table);
+        return es.longMap != null ? es.longMap.containsKey(key) : es.stringMap.containsKey(String.valueOf(key));
+    }
+
+    /**
+     * 已加载的实体，未加载或不存在时返回null
+     */
+    public Object getEntity(EntityTable table, Object key) {
+        Entities es = entities(table);
+        Object obj = es.longMap != null ? es.longMap.get(toLong(key)) : es.stringMap.get(String.valueOf(key));
+        return obj == MISSING ? null : obj;
+    }
+
+    public Object getEntity(EntityTable table, long key) {
+        Entities es = entities(table);
+        Object obj = es.longMap != null ? es.longMap.get(key) : es.stringMap.get(String.valueOf(key));
+        return obj == MISSING ? null : obj;
+    }
+
+    /**
+     * 读取游标中的主键值：整数主键为 {@link Long}，其他为 {@link String}，NULL 返回null
+     */
+    public Object readKey(EntityTable table, Cursor c, int index) {
+        if (c.isNull(index)) {
+            return null;
+        }
+        return entities(table).longMap != null ? (Object) c.getLong(index) : c.getString(index);
+    }
+
+    /**
+     * 主键是否为整数，整数主键可以用 long 做key
+     */
+    public boolean isIntegerKey(EntityTable table) {
+        return entities(table).longMap != null;
+    }
+
+    private Entities entities(EntityTable table) {
+        if (entities == null) {
+            entities = new HashMap<EntityTable, Entities>();
+        }
+        Entities es = entities.get(table);
+        if (es == null) {
+            es = new Entities(isIntegerType(table));
+            entities.put(table, es);
+        }
+        return es;
+    }
+
+    private static boolean isIntegerType(EntityTable table) {
+        int classType = table.key.classType > 0 ? table.key.classType : DataUtil.getFieldClassType(table.key.field);
+        switch (classType) {
+            case DataUtil.CLASS_TYPE_LONG:
+            case DataUtil.CLASS_TYPE_INT:
+            case DataUtil.CLASS_TYPE_SHORT:
+            case DataUtil.CLASS_TYPE_BYTE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static long toLong(Object key) {
+        return key instanceof Number ? ((Number) key).longValue() : Long.parseLong(String.valueOf(key));
+    }
+
+    /**
+     * 一张表已加载的实体
+     */
+    private static final class Entities {
+        final LongMap longMap;
+        final HashMap<String, Object> stringMap;
+
+        Entities(boolean integerKey) {
+            longMap = integerKey ? new LongMap() : null;
+            stringMap = integerKey ? null : new HashMap<String, Object>();
+        }
+    }
+
+    /**
+     * long 为key的开放寻址哈希表，key不装箱
+     */
+    private static final class LongMap {
+        private long[] keys = new long[16];
+        private Object[] values = new Object[16];
+        private int size;
+
+        Object get(long key) {
+            int mask = keys.length - 1;
+            for (int i = hash(key) & mask; values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+            }
+            return null;
+        }
+
+        boolean containsKey(long key) {
+            return get(key) != null;
+        }
+
+        void put(long key, Object value) {
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+            for (; values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    values[i] = value;
+                    return;
+                }
+            }
+            keys[i] = key;
+            values[i] = value;
+            if (++size * 2 > keys.length) {
+                resize();
+            }
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            Object[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new Object[oldValues.length * 2];
+            int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldValues[j] != null) {
+                    int i = hash(oldKeys[j]) & mask;
+                    while (values[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    values[i] = oldValues[j];
+                }
+            }
+        }
+
+        private static int hash(long key) {
+            int h = (int) (key ^ (key >>> 32));
+            return h ^ (h >>> 16);
+        }
+    }
+}
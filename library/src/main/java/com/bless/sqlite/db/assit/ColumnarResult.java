@@ -0,0 +1,385 @@
+package com.bless.sqlite.db.assit;
+
+import android.database.Cursor;
+
+import com.bless.sqlite.db.TableManager;
+import com.bless.sqlite.db.model.EntityTable;
+import com.bless.sqlite.db.model.Property;
+import com.bless.sqlite.db.utils.DataUtil;
+
+import java.util.Arrays;
+
+/**
+ * 按列存储的查询结果，每列一个数组，不创建实体对象，适合统计大量数据。
+ * <p>
+ * 列的类型由实体属性的 {@link Property#classType} 决定：
+ * <ul>
+ * <li>long、int、short、byte、Date、boolean 存为 long[]，Date 为毫秒数，boolean 为 1/0</li>
+ * <li>double、float 存为 double[]</li>
+ * <li>String、char 存为 String[]</li>
+ * <li>byte[] 及序列化对象存为 byte[][]，为数据库中的原始数据</li>
+ * </ul>
+ * NULL 在数值数组中为0，可通过 {@link #isNull(int, int)} 区分，求最值和直方图时跳过 NULL。
+ */
+public final class ColumnarResult {
+    private static final int TYPE_LONG = 1;
+    private static final int TYPE_DOUBLE = 2;
+    private static final int TYPE_STRING = 3;
+    private static final int TYPE_BLOB = 4;
+
+    private final String[] columns;
+    private final int[] classTypes;
+    private final int[] types;
+    private final Object[] data;
+    private final boolean[][] nulls;
+    private int size;
+
+    ColumnarResult(String[] columns, int[] classTypes) {
+        this.columns = columns;
+        this.classTypes = classTypes;
+        this.types = new int[columns.length];
+        this.data = new Object[columns.length];
+        this.nulls = new boolean[columns.length][];
+        for (int i = 0; i < columns.length; i++) {
+            types[i] = storageType(columns[i], classTypes[i]);
+        }
+        allocate(0);
+    }
+
+    /**
+     * 根据查询的列(未指定时为实体的全部列)及实体属性类型创建空结果
+     */
+    public static ColumnarResult create(QueryBuilder<?> qb) {
+        EntityTable table = TableManager.getTable(qb.getQueryClass());
+        String[] columns = qb.columns;
+        if (Checker.isEmpty(columns)) {
+            int n = (table.key != null ? 1 : 0) + (table.pmap != null ? table.pmap.size() : 0);
+            columns = new String[n];
+            int i = 0;
+            if (table.key != null) {
+                columns[i++] = table.key.column;
+            }
+            if (table.pmap != null) {
+                for (String col : table.pmap.keySet()) {
+                    columns[i++] = col;
+                }
+            }
+        }
+        int[] classTypes = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            Property p = table.key != null && table.key.column.equals(columns[i])
+                    ? table.key : table.pmap == null ? null : table.pmap.get(columns[i]);
+            if (p == null) {
+                throw new IllegalArgumentException(columns[i] + " is not a column of " + table.name);
+            }
+            classTypes[i] = p.classType > 0 ? p.classType : DataUtil.getFieldClassType(p.field);
+        }
+        return new ColumnarResult(columns, classTypes);
+    }
+
+    private static int storageType(String column, int classType) {
+        switch (classType) {
+            case DataUtil.CLASS_TYPE_LONG:
+            case DataUtil.CLASS_TYPE_INT:
+            case DataUtil.CLASS_TYPE_SHORT:
+            case DataUtil.CLASS_TYPE_BYTE:
+            case DataUtil.CLASS_TYPE_DATE:
+            case DataUtil.CLASS_TYPE_BOOLEAN:
+                return TYPE_LONG;
+            case DataUtil.CLASS_TYPE_DOUBLE:
+            case DataUtil.CLASS_TYPE_FLOAT:
+                return TYPE_DOUBLE;
+            case DataUtil.CLASS_TYPE_STRING:
+            case DataUtil.CLASS_TYPE_CHAR:
+                return TYPE_STRING;
+            case DataUtil.CLASS_TYPE_BYTE_ARRAY:
+            case DataUtil.CLASS_TYPE_SERIALIZABLE:
+                return TYPE_BLOB;
+            default:
+                throw new IllegalArgumentException("unsupported column type of " + column);
+        }
+    }
+
+    /**
+     * 按 Cursor 行数一次分配
+     */
+    void allocate(int capacity) {
+        for (int i = 0; i < columns.length; i++) {
+            switch (types[i]) {
+                case TYPE_LONG:
+                    data[i] = new long[capacity];
+                    break;
+                case TYPE_DOUBLE:
+                    data[i] = new double[capacity];
+                    break;
+                case TYPE_STRING:
+                    data[i] = new String[capacity];
+                    break;
+                default:
+                    data[i] = new byte[capacity][];
+                    break;
+            }
+        }
+        size = 0;
+    }
+
+    /**
+     * 读取 Cursor 当前行，Cursor 的列顺序与 {@link #getColumns()} 一致
+     */
+    void append(Cursor c) {
+        if (size == capacity()) {
+            grow(Math.max(16, size << 1));
+        }
+        int row = size++;
+        for (int i = 0; i < columns.length; i++) {
+            if (c.isNull(i)) {
+                markNull(i, row);
+                continue;
+            }
+            switch (types[i]) {
+                case TYPE_LONG:
+                    ((long[]) data[i])[row] = classTypes[i] == DataUtil.CLASS_TYPE_BOOLEAN
+                            ? (Boolean.parseBoolean(c.getString(i)) ? 1 : 0) : c.getLong(i);
+                    break;
+                case TYPE_DOUBLE:
+                    ((double[]) data[i])[row] = c.getDouble(i);
+                    break;
+                case TYPE_STRING:
+                    ((String[]) data[i])[row] = c.getString(i);
+                    break;
+                default:
+                    ((byte[][]) data[i])[row] = c.getBlob(i);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * 读取结束，数组截取到实际行数
+     */
+    void trim() {
+        if (size != capacity()) {
+            grow(size);
+        }
+    }
+
+    private int capacity() {
+        Object arr = data.length > 0 ? data[0] : null;
+        if (arr instanceof long[]) {
+            return ((long[]) arr).length;
+        } else if (arr instanceof double[]) {
+            return ((double[]) arr).length;
+        } else if (arr instanceof Object[]) {
+            return ((Object[]) arr).length;
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    private void grow(int capacity) {
+        for (int i = 0; i < columns.length; i++) {
+            switch (types[i]) {
+                case TYPE_LONG:
+                    data[i] = Arrays.copyOf((long[]) data[i], capacity);
+                    break;
+                case TYPE_DOUBLE:
+                    data[i] = Arrays.copyOf((double[]) data[i], capacity);
+                    break;
+                case TYPE_STRING:
+                    data[i] = Arrays.copyOf((String[]) data[i], capacity);
+                    break;
+                default:
+                    data[i] = Arrays.copyOf((byte[][]) data[i], capacity);
+                    break;
+            }
+            if (nulls[i] != null) {
+                nulls[i] = Arrays.copyOf(nulls[i], capacity);
+            }
+        }
+    }
+
+    private void markNull(int column, int row) {
+        if (nulls[column] == null) {
+            nulls[column] = new boolean[capacity()];
+        }
+        nulls[column][row] = true;
+    }
+
+    /*------------------------------ 访问数据 ------------------------------*/
+
+    /**
+     * 行数
+     */
+    public int size() {
+        return size;
+    }
+
+    public String[] getColumns() {
+        return columns;
+    }
+
+    /**
+     * 列的位置，不存在时返回-1
+     */
+    public int indexOf(String column) {
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].equals(column)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public boolean isNull(int column, int row) {
+        return nulls[column] != null && nulls[column][row];
+    }
+
+    public long[] getLongs(String column) {
+        return (long[]) get(column, TYPE_LONG);
+    }
+
+    public double[] getDoubles(String column) {
+        return (double[]) get(column, TYPE_DOUBLE);
+    }
+
+    public String[] getStrings(String column) {
+        return (String[]) get(column, TYPE_STRING);
+    }
+
+    public byte[][] getBlobs(String column) {
+        return (byte[][]) get(column, TYPE_BLOB);
+    }
+
+    private Object get(String column, int type) {
+        int i = checkIndex(column);
+        if (types[i] != type) {
+            throw new IllegalArgumentException(column + " is not stored as the requested type");
+        }
+        return data[i];
+    }
+
+    private int checkIndex(String column) {
+        int i = indexOf(column);
+        if (i < 0) {
+            throw new IllegalArgumentException(column + " is not in the result");
+        }
+        return i;
+    }
+
+    private int checkNumeric(String column) {
+        int i = checkIndex(column);
+        if (types[i] != TYPE_LONG && types[i] != TYPE_DOUBLE) {
+            throw new IllegalArgumentException(column + " is not a numeric column");
+        }
+        return i;
+    }
+
+    /*------------------------------ 统计 ------------------------------*/
+
+    /**
+     * 整数列求和
+     */
+    public long sumLong(String column) {
+        long[] arr = (long[]) get(column, TYPE_LONG);
+        long sum = 0;
+        // NULL 存为0，求和时无需跳过
+        for (int r = 0; r < size; r++) {
+            sum += arr[r];
+        }
+        return sum;
+    }
+
+    /**
+     * 数值列求和
+     */
+    public double sum(String column) {
+        int i = checkNumeric(column);
+        if (types[i] == TYPE_LONG) {
+            return sumLong(column);
+        }
+        double[] arr = (double[]) data[i];
+        double sum = 0;
+        for (int r = 0; r < size; r++) {
+            sum += arr[r];
+        }
+        return sum;
+    }
+
+    /**
+     * 数值列最小值，跳过 NULL，没有数据时返回 NaN
+     */
+    public double min(String column) {
+        return extreme(column, true);
+    }
+
+    /**
+     * 数值列最大值，跳过 NULL，没有数据时返回 NaN
+     */
+    public double max(String column) {
+        return extreme(column, false);
+    }
+
+    private double extreme(String column, boolean min) {
+        int i = checkNumeric(column);
+        boolean[] nul = nulls[i];
+        double result = Double.NaN;
+        boolean found = false;
+        if (types[i] == TYPE_LONG) {
+            long[] arr = (long[]) data[i];
+            long v = 0;
+            for (int r = 0; r < size; r++) {
+                if (nul != null && nul[r]) {
+                    continue;
+                }
+                if (!found || (min ? arr[r] < v : arr[r] > v)) {
+                    v = arr[r];
+                    found = true;
+                }
+            }
+            if (found) {
+                result = v;
+            }
+        } else {
+            double[] arr = (double[]) data[i];
+            for (int r = 0; r < size; r++) {
+                if (nul != null && nul[r]) {
+                    continue;
+                }
+                if (!found || (min ? arr[r] < result : arr[r] > result)) {
+                    result = arr[r];
+                    found = true;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 数值列直方图，[from, to) 等分为 buckets 个区间，等于 to 的值计入最后一个区间，
+     * 范围外的值和 NULL 不计入。
+     *
+     * @return 每个区间的行数
+     */
+    public int[] histogram(String column, double from, double to, int buckets) {
+        if (buckets <= 0 || !(to > from)) {
+            throw new IllegalArgumentException("invalid histogram range or buckets");
+        }
+        int i = checkNumeric(column);
+        boolean[] nul = nulls[i];
+        int[] counts = new int[buckets];
+        double scale = buckets / (to - from);
+        long[] longs = types[i] == TYPE_LONG ? (long[]) data[i] : null;
+        double[] doubles = longs == null ? (double[]) data[i] : null;
+        for (int r = 0; r < size; r++) {
+            if (nul != null && nul[r]) {
+                continue;
+            }
+            double v = longs != null ? longs[r] : doubles[r];
+            if (v < from || v > to) {
+                continue;
+            }
+            int b = (int) ((v - from) * scale);
+            counts[b < buckets ? b : buckets - 1]++;
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,63 @@
+package com.bless.sqlite.db.assit;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteProgram;
+
+import java.io.IOException;
+
+/**
+ * 编译期生成的实体适配器，由 compiler 模块的注解处理器为带{@link com.bless.sqlite.db.annotation.Table}
+ * 或{@link com.bless.sqlite.db.annotation.PrimaryKey}的实体生成，类名为 实体类名 + {@link #SUFFIX}。
+ * <p>
+ * 直接访问属性(或其getter/setter)完成Cursor读取和参数绑定，不经过反射。
+ * 属性以{@link #getColumns()}中的序号标识，与运行时{@link com.bless.sqlite.db.model.EntityTable#pmap}的顺序无关。
+ * 运行时见{@link EntityAdapters}，找不到生成类时回退到反射。
+ */
+public interface EntityAdapter<T> {
+    String SUFFIX = "_SQLiteAdapter";
+
+    /**
+     * 主键列名，没有主键返回null
+     */
+    String getKeyColumn();
+
+    /**
+     * 非主键属性的列名，数组序号即属性序号
+     */
+    String[] getColumns();
+
+    /**
+     * 主键属性的标识，格式为 声明类(binary name)#属性名，没有主键返回null
+     */
+    String getKeyField();
+
+    /**
+     * 非主键属性的标识，格式同{@link #getKeyField()}，顺序同{@link #getColumns()}
+     */
+    String[] getFields();
+
+    T newInstance();
+
+    /**
+     * 将Cursor当前行注入实体
+     *
+     * @param keyIndex 主键所在的列序号，-1表示结果中没有主键
+     * @param indexes  每个属性所在的列序号，-1表示结果中没有该属性
+     */
+    void readCursor(Cursor c, int keyIndex, int[] indexes, T entity) throws Exception;
+
+    /**
+     * 绑定序号为property的属性，规则与{@link SQLStatement#bind(SQLiteProgram, int, Object)}一致
+     */
+    void bindColumn(SQLiteProgram st, int index, int property, T entity) throws IOException;
+
+    /**
+     * 绑定主键，系统分配且未赋值(<1)的主键绑定为null
+     */
+    void bindKey(SQLiteProgram st, int index, T entity) throws IOException;
+
+    /**
+     * 系统分配的主键未赋值时，将 rowID 注入实体
+     */
+    boolean setKeyValueIfNeed(T entity, long rowID);
+}
@@ -0,0 +1,82 @@
+package com.bless.sqlite.db.assit;
+
+import com.bless.sqlite.db.model.EntityTable;
+import com.bless.sqlite.db.model.Property;
+import com.bless.sqlite.log.Log;
+
+/**
+ * 查找编译期生成的{@link EntityAdapter}
+ */
+public final class EntityAdapters {
+    private static final String TAG = EntityAdapters.class.getSimpleName();
+
+    private EntityAdapters() {
+    }
+
+    /**
+     * 加载实体表对应的生成类，没有生成类或其列与实体表不一致时返回null，调用者回退到反射。
+     */
+    public static EntityAdapter<?> load(EntityTable table) {
+        Class<?> claxx = table.claxx;
+        if (claxx == null) {
+            return null;
+        }
+        String name = getAdapterName(claxx);
+        EntityAdapter<?> adapter;
+        try {
+            Class<?> adapterClass = Class.forName(name, true, claxx.getClassLoader());
+            adapter = (EntityAdapter<?>) adapterClass.newInstance();
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+        if (!matches(adapter, table)) {
+            if (Log.isPrint) {
+                Log.w(TAG, name + " 与实体[" + claxx.getName() + "]的表结构不一致，使用反射");
+            }
+            return null;
+        }
+        return adapter;
+    }
+
+    /**
+     * 生成类的类名：内部类的$替换为_，再加上{@link EntityAdapter#SUFFIX}
+     */
+    public static String getAdapterName(Class<?> claxx) {
+        String name = claxx.getName();
+        int dot = name.lastIndexOf('.');
+        return name.substring(0, dot + 1) + name.substring(dot + 1).replace('$', '_') + EntityAdapter.SUFFIX;
+    }
+
+    /**
+     * 生成类与反射解析的结果一致：列名相同，且每一列对应同一个属性
+     */
+    private static boolean matches(EntityAdapter<?> adapter, EntityTable table) {
+        String keyColumn = adapter.getKeyColumn();
+        if (table.key == null ? keyColumn != null : !table.key.column.equals(keyColumn)) {
+            return false;
+        }
+        if (table.key != null && !fieldId(table.key).equals(adapter.getKeyField())) {
+            return false;
+        }
+        String[] columns = adapter.getColumns();
+        String[] fields = adapter.getFields();
+        int size = table.pmap == null ? 0 : table.pmap.size();
+        if (columns.length != size || fields.length != size) {
+            return false;
+        }
+        for (int i = 0; i < columns.length; i++) {
+            Property p = table.pmap.get(columns[i]);
+            if (p == null || !fieldId(p).equals(fields[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String fieldId(Property p) {
+        return p.field.getDeclaringClass().getName() + "#" + p.field.getName();
+    }
+}
@@ -0,0 +1,274 @@
+package com.bless.sqlite.db.assit;
+
+import android.database.sqlite.SQLiteProgram;
+
+import com.bless.sqlite.db.model.EntityTable;
+import com.bless.sqlite.db.model.Primarykey;
+import com.bless.sqlite.db.model.Property;
+import com.bless.sqlite.db.utils.DataUtil;
+import com.bless.sqlite.db.utils.FieldUtil;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * 实体参数绑定器，每个{@link EntityTable}一个。
+ * <p>
+ * 依据{@link Property#classType}用基本类型访问器读取属性，直接调用 bindLong/bindDouble/bindString/bindBlob，
+ * 不构建参数数组，也不装箱，绑定每一行时不产生新对象(序列化属性除外)。
+ * 绑定顺序与{@link SQLBuilder}构建的 insert、update 语句一致。
+ * 实体有编译期生成的{@link EntityAdapter}时，由其直接读取属性。
+ */
+public final class EntityBinder {
+
+    /**
+     * ASCII 字符对应的字符串，避免绑定 char 时创建新字符串
+     */
+    private static final String[] ASCII_STRINGS = new String[128];
+
+    static {
+        for (int i = 0; i < ASCII_STRINGS.length; i++) {
+            ASCII_STRINGS[i] = String.valueOf((char) i);
+        }
+    }
+
+    private final Primarykey key;
+    private final boolean keyPrimitive;
+    private final Field[] fields;
+    private final int[] classTypes;
+    private final boolean[] primitives;
+    private final EntityAdapter<Object> adapter;
+    /**
+     * pmap中每个属性在生成类中的序号
+     */
+    private final int[] adapterOrder;
+
+    @SuppressWarnings("unchecked")
+    private EntityBinder(EntityTable table) {
+        this.key = table.key;
+        this.adapter = (EntityAdapter<Object>) table.adapter;
+        if (key != null) {
+            key.field.setAccessible(true);
+            keyPrimitive = key.field.getType().isPrimitive();
+        } else {
+            keyPrimitive = false;
+        }
+        int size = table.pmap == null ? 0 : table.pmap.size();
+        fields = new Field[size];
+        classTypes = new int[size];
+        primitives = new boolean[size];
+        if (size > 0) {
+            int i = 0;
+            for (Property p : table.pmap.values()) {
+                if (p != null) {
+                    p.field.setAccessible(true);
+                    fields[i] = p.field;
+                    classTypes[i] = p.classType;
+                    primitives[i] = p.field.getType().isPrimitive();
+                }
+                i++;
+            }
+        }
+        if (adapter != null) {
+            String[] columns = adapter.getColumns();
+            adapterOrder = new int[size];
+            int i = 0;
+            for (String col : table.pmap.keySet()) {
+                adapterOrder[i++] = Arrays.asList(columns).indexOf(col);
+            }
+        } else {
+            adapterOrder = null;
+        }
+    }
+
+    /**
+     * 获取实体表对应的绑定器，没有则新建。
+     */
+    public static EntityBinder of(EntityTable table) {
+        EntityBinder binder = table.binder;
+        if (binder == null) {
+            binder = new EntityBinder(table);
+            table.binder = binder;
+        }
+        return binder;
+    }
+
+    /**
+     * 绑定 insert 语句的一行：主键在前，其他属性在后。
+     *
+     * @param index 第一个占位符的序号(1-based)
+     * @return 下一个占位符的序号
+     */
+    public int bindInsert(SQLiteProgram st, int index, Object entity) throws IllegalAccessException, IOException {
+        if (key != null) {
+            bindKey(st, index++, entity);
+        }
+        return bindProperties(st, index, entity);
+    }
+
+    /**
+     * 绑定全部列的 update 语句：属性在前，主键(where key=?)在后。
+     *
+     * @return 下一个占位符的序号
+     */
+    public int bindUpdate(SQLiteProgram st, Object entity) throws IllegalAccessException, IOException {
+        int index = bindProperties(st, 1, entity);
+        if (key != null) {
+            bindKey(st, index++, entity);
+        }
+        return index;
+    }
+
+    /**
+     * 按{@link FieldUtil#getAssignedKeyObject}的规则绑定主键：系统分配且未赋值(<1)的主键绑定为null。
+     */
+    public void bindKey(SQLiteProgram st, int index, Object entity) throws IllegalAccessException, IOException {
+        if (adapter != null) {
+            adapter.bindKey(st, index, entity);
+        } else if (key.isAssignedBySystem()) {
+            if (keyPrimitive) {
+                long id = key.field.getLong(entity);
+                if (id > 0) {
+                    st.bindLong(index, id);
+                } else {
+                    st.bindNull(index);
+                }
+            } else {
+                Number id = (Number) key.field.get(entity);
+                if (id != null && id.longValue() > 0) {
+                    st.bindLong(index, id.longValue());
+                } else {
+                    st.bindNull(index);
+                }
+            }
+        } else {
+            bind(st, index, key.field, key.classType, keyPrimitive, entity);
+        }
+    }
+
+    /**
+     * 系统分配的主键未赋值时，将 rowID 注入实体，同 {@link FieldUtil#setKeyValueIfneed}。
+     */
+    public boolean setKeyValueIfNeed(Object entity, long rowID) throws IllegalAccessException {
+        if (adapter != null) {
+            return key != null && adapter.setKeyValueIfNeed(entity, rowID);
+        }
+        if (key != null && key.isAssignedBySystem()) {
+            long id;
+            if (keyPrimitive) {
+                id = key.field.getLong(entity);
+            } else {
+                Number n = (Number) key.field.get(entity);
+                id = n == null ? 0 : n.longValue();
+            }
+            if (id < 1) {
+                FieldUtil.setNumber(entity, key.field, rowID);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int bindProperties(SQLiteProgram st, int index, Object entity)
+            throws IllegalAccessException, IOException {
+        if (adapter != null) {
+            for (int i = 0; i < adapterOrder.length; i++) {
+                adapter.bindColumn(st, index++, adapterOrder[i], entity);
+            }
+            return index;
+        }
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i] == null) {
+                st.bindNull(index++);
+            } else {
+                bind(st, index++, fields[i], classTypes[i], primitives[i], entity);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * 绑定规则与 {@link SQLStatement#bind(int, Object)} 保持一致
+     */
+    private static void bind(SQLiteProgram st, int i, Field f, int classType, boolean primitive, Object entity)
+            throws IllegalAccessException, IOException {
+        if (primitive) {
+            switch (classType) {
+                case DataUtil.CLASS_TYPE_BOOLEAN:
+                    st.bindString(i, f.getBoolean(entity) ? "true" : "false");
+                    return;
+                case DataUtil.CLASS_TYPE_CHAR:
+                    st.bindString(i, charToString(f.getChar(entity)));
+                    return;
+                case DataUtil.CLASS_TYPE_DOUBLE:
+                    st.bindDouble(i, f.getDouble(entity));
+                    return;
+                case DataUtil.CLASS_TYPE_FLOAT:
+                    st.bindDouble(i, f.getFloat(entity));
+                    return;
+                case DataUtil.CLASS_TYPE_LONG:
+                    st.bindLong(i, f.getLong(entity));
+                    return;
+                case DataUtil.CLASS_TYPE_INT:
+                    st.bindLong(i, f.getInt(entity));
+                    return;
+                case DataUtil.CLASS_TYPE_SHORT:
+                    st.bindLong(i, f.getShort(entity));
+                    return;
+                case DataUtil.CLASS_TYPE_BYTE:
+                    st.bindLong(i, f.getByte(entity));
+                    return;
+                default:
+                    break;
+            }
+        }
+        Object o = f.get(entity);
+        if (o == null) {
+            st.bindNull(i);
+            return;
+        }
+        switch (classType) {
+            case DataUtil.CLASS_TYPE_STRING:
+                st.bindString(i, o.toString());
+                break;
+            case DataUtil.CLASS_TYPE_BOOLEAN:
+                st.bindString(i, ((Boolean) o) ? "true" : "false");
+                break;
+            case DataUtil.CLASS_TYPE_CHAR:
+                st.bindString(i, charToString((Character) o));
+                break;
+            case DataUtil.CLASS_TYPE_DOUBLE:
+            case DataUtil.CLASS_TYPE_FLOAT:
+                st.bindDouble(i, ((Number) o).doubleValue());
+                break;
+            case DataUtil.CLASS_TYPE_LONG:
+            case DataUtil.CLASS_TYPE_INT:
+            case DataUtil.CLASS_TYPE_SHORT:
+            case DataUtil.CLASS_TYPE_BYTE:
+                st.bindLong(i, ((Number) o).longValue());
+                break;
+            case DataUtil.CLASS_TYPE_DATE:
+                st.bindLong(i, ((Date) o).getTime());
+                break;
+            case DataUtil.CLASS_TYPE_BYTE_ARRAY:
+                if (o instanceof byte[]) {
+                    st.bindBlob(i, (byte[]) o);
+                } else {
+                    st.bindBlob(i, DataUtil.objectToByte(o));
+                }
+                break;
+            case DataUtil.CLASS_TYPE_SERIALIZABLE:
+                st.bindBlob(i, DataUtil.objectToByte(o));
+                break;
+            default:
+                st.bindNull(i);
+                break;
+        }
+    }
+
+    private static String charToString(char c) {
+        return c < ASCII_STRINGS.length ? ASCII_STRINGS[c] : String.valueOf(c);
+    }
+}
@@ -0,0 +1,26 @@
+package com.bless.sqlite.db.assit;
+
+import com.bless.sqlite.db.model.EntityTable;
+
+/**
+ * 编译期生成的实体索引，由 compiler 模块的注解处理器生成。
+ * <p>
+ * 包含每个实体预先计算好的表结构({@link EntityTable})和建表语句，
+ * {@link com.bless.sqlite.db.TableManager} 优先从索引获取实体表，不在索引中的类回退到反射解析。
+ */
+public interface EntityIndex {
+    /**
+     * 默认生成的索引类名，{@link com.bless.sqlite.db.TableManager} 启动时自动加载
+     */
+    String DEFAULT_NAME = "com.bless.sqlite.generated.BlessSqliteIndex";
+
+    /**
+     * 索引中全部实体的类名
+     */
+    String[] getEntityNames();
+
+    /**
+     * 创建实体表，类不在索引中时返回null
+     */
+    EntityTable createTable(Class<?> claxx) throws NoSuchFieldException;
+}
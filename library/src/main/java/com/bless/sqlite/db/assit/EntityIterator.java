@@ -0,0 +1,154 @@
+package com.bless.sqlite.db.assit;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteClosable;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.bless.sqlite.db.TableManager;
+import com.bless.sqlite.db.model.EntityTable;
+import com.bless.sqlite.log.Log;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 基于 Cursor 的惰性查询结果，每次 {@link #next()} 只读取并映射一行。
+ * <p>
+ * 遍历结束时自动关闭；提前结束遍历时必须调用 {@link #close()} 释放 Cursor 和数据库引用：
+ * <pre>
+ * EntityIterator&lt;User&gt; it = db.iterate(QueryBuilder.create(User.class));
+ * try {
+ *     while (it.hasNext()) {
+ *         User u = it.next();
+ *         ...
+ *     }
+ * } finally {
+ *     it.close();
+ * }
+ * </pre>
+ * 非线程安全，只能在一个线程中遍历。
+ */
+public class EntityIterator<T> implements Iterator<T>, Iterable<T>, Closeable {
+    private static final String TAG = EntityIterator.class.getSimpleName();
+
+    private final SQLiteDatabase db;
+    private final EntityTable table;
+    private Cursor cursor;
+    private SQLiteClosable owner;
+    private EntityMapper mapper;
+    private boolean hasNext;
+
+    /**
+     * @param owner 遍历期间持有的引用，关闭时释放，可为null
+     */
+    protected EntityIterator(SQLiteDatabase db, Cursor cursor, Class<T> claxx, SQLiteClosable owner) {
+        this.db = db;
+        this.table = TableManager.getTable(claxx, false);
+        this.cursor = cursor;
+        this.owner = owner;
+        try {
+            this.hasNext = cursor != null && cursor.moveToFirst();
+        } finally {
+            if (!hasNext) {
+                close();
+            }
+        }
+    }
+
+    /**
+     * 执行查询并返回惰性结果，owner 的引用在关闭时释放(无论查询是否成功)
+     */
+    public static <T> EntityIterator<T> query(SQLiteDatabase db, SQLStatement st, Class<T> claxx,
+            SQLiteClosable owner) {
+        return new EntityIterator<T>(db, openCursor(db, st, owner), claxx, owner);
+    }
+
+    /**
+     * 空结果
+     */
+    public static <T> EntityIterator<T> empty(Class<T> claxx) {
+        return new EntityIterator<T>(null, null, claxx, null);
+    }
+
+    /**
+     * 打开查询 Cursor，失败时释放 owner 的引用
+     */
+    public static Cursor openCursor(SQLiteDatabase db, SQLStatement st, SQLiteClosable owner) {
+        if (Log.isPrint) {
+            Log.d(TAG, "----> Iterate Start: " + st.toString());
+        }
+        try {
+            return TypedCursorFactory.rawQuery(db, st.sql, st.bindArgs);
+        } catch (RuntimeException e) {
+            if (owner != null) {
+                owner.releaseReference();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return hasNext;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext) {
+            throw new NoSuchElementException();
+        }
+        try {
+            if (mapper == null) {
+                mapper = EntityMapper.of(table, cursor);
+            }
+            @SuppressWarnings("unchecked")
+            T t = (T) mapper.newInstance();
+            mapper.inject(cursor, t);
+            onEntity(db, t);
+            hasNext = cursor.moveToNext();
+            if (!hasNext) {
+                close();
+            }
+            return t;
+        } catch (Exception e) {
+            close();
+            throw new RuntimeException("iterate " + table.name + " failed", e);
+        }
+    }
+
+    /**
+     * 每一行映射完成后调用，可用于加载关联对象
+     */
+    protected void onEntity(SQLiteDatabase db, T entity) throws Exception {
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("remove");
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return this;
+    }
+
+    /**
+     * 关闭 Cursor 并释放数据库引用，可重复调用
+     */
+    @Override
+    public void close() {
+        hasNext = false;
+        if (cursor != null) {
+            cursor.close();
+            cursor = null;
+            if (Log.isPrint) {
+                Log.d(TAG, "<---- Iterate End: " + table.name);
+            }
+        }
+        if (owner != null) {
+            owner.releaseReference();
+            owner = null;
+        }
+    }
+}
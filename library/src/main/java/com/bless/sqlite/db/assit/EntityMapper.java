@@ -0,0 +1,283 @@
+package com.bless.sqlite.db.assit;
+
+import android.database.Cursor;
+
+import com.bless.sqlite.db.model.EntityTable;
+import com.bless.sqlite.db.model.Property;
+import com.bless.sqlite.db.utils.ClassUtil;
+import com.bless.sqlite.db.utils.DataUtil;
+import com.bless.sqlite.log.Log;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 结果行映射计划，每个{@link EntityTable}的每种Cursor列布局一个。
+ * <p>
+ * 列名到属性的查找、setAccessible 只在构建计划时做一次，之后每行按列序号直接读取，
+ * 基本类型属性用 setInt/setLong 等访问器注入，不装箱。
+ * 计划缓存在实体表上，同样的查询列不会重复构建。
+ * 实体有编译期生成的{@link EntityAdapter}时，由其直接读取属性。
+ */
+public final class EntityMapper {
+    private static final String TAG = EntityMapper.class.getSimpleName();
+
+    /**
+     * 每个实体表缓存的列布局上限，超出后清空重建
+     */
+    private static final int MAX_LAYOUTS = 16;
+
+    /**
+     * 联表查询附加列的别名前缀
+     */
+    public static final String ALIAS_PREFIX = "__";
+
+    private final Class<?> claxx;
+    private final EntityAdapter<Object> adapter;
+    private final int keyIndex;
+    private final int[] indexes;
+    private final Field[] fields;
+    private final int[] classTypes;
+    private final boolean[] primitives;
+
+    @SuppressWarnings("unchecked")
+    private EntityMapper(EntityTable table, String[] columns, Set<String> extraColumns) {
+        this.claxx = table.claxx;
+        this.adapter = (EntityAdapter<Object>) table.adapter;
+        if (adapter != null) {
+            // 生成类按属性序号读取，这里只需确定每个属性所在的列
+            keyIndex = indexOf(columns, adapter.getKeyColumn());
+            String[] props = adapter.getColumns();
+            indexes = new int[props.length];
+            for (int i = 0; i < props.length; i++) {
+                indexes[i] = indexOf(columns, props[i]);
+            }
+            fields = null;
+            classTypes = null;
+            primitives = null;
+            return;
+        }
+        keyIndex = -1;
+        ArrayList<Property> props = new ArrayList<Property>(columns.length);
+        ArrayList<Integer> idx = new ArrayList<Integer>(columns.length);
+        for (int i = 0; i < columns.length; i++) {
+            if (extraColumns != null && extraColumns.contains(columns[i])) {
+                continue;
+            }
+            Property p = getColumnProperty(table, columns[i]);
+            if (p == null) {
+                if (Log.isPrint) {
+                    Log.w(TAG, "数据库字段[" + columns[i] + "]已在实体中被移除");
+                }
+                continue;
+            }
+            p.field.setAccessible(true);
+            props.add(p);
+            idx.add(i);
+        }
+        int size = props.size();
+        indexes = new int[size];
+        fields = new Field[size];
+        classTypes = new int[size];
+        primitives = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            Property p = props.get(i);
+            indexes[i] = idx.get(i);
+            fields[i] = p.field;
+            classTypes[i] = p.classType;
+            primitives[i] = p.field.getType().isPrimitive();
+        }
+    }
+
+    /**
+     * 获取实体表在当前Cursor列布局下的映射计划，没有则新建。
+     * 应在第一行之前(或第一行时)获取一次，之后每行复用。
+     */
+    public static EntityMapper of(EntityTable table, Cursor c) {
+        return of(table, c, null);
+    }
+
+    /**
+     * 同{@link #of(EntityTable, Cursor)}，用于联表查询
+     *
+     * @param extraColumns 结果中不属于实体的列(如联表附加的别名列)，映射时跳过
+     */
+    public static EntityMapper of(EntityTable table, Cursor c, Set<String> extraColumns) {
+        String[] columns = c.getColumnNames();
+        String layout = layoutOf(columns);
+        if (extraColumns != null) {
+            // 同样的列布局，跳过的列不同时计划也不同
+            layout = extraColumns + layout;
+        }
+        ConcurrentHashMap<String, EntityMapper> mappers = table.mappers;
+        if (mappers == null) {
+            synchronized (table) {
+                mappers = table.mappers;
+                if (mappers == null) {
+                    mappers = new ConcurrentHashMap<String, EntityMapper>();
+                    table.mappers = mappers;
+                }
+            }
+        }
+        EntityMapper mapper = mappers.get(layout);
+        if (mapper == null) {
+            mapper = new EntityMapper(table, columns, extraColumns);
+            if (mappers.size() >= MAX_LAYOUTS) {
+                mappers.clear();
+            }
+            mappers.put(layout, mapper);
+        }
+        return mapper;
+    }
+
+    /**
+     * 将Cursor当前行注入实体
+     * 支持11种基本类型及序列化对象，规则与{@link DataUtil#injectDataToObject}一致。
+     */
+    public void inject(Cursor c, Object entity) throws Exception {
+        if (adapter != null) {
+            adapter.readCursor(c, keyIndex, indexes, entity);
+            return;
+        }
+        for (int j = 0; j < fields.length; j++) {
+            int i = indexes[j];
+            Field f = fields[j];
+            if (primitives[j]) {
+                injectPrimitive(c, i, f, classTypes[j], entity);
+            } else {
+                injectObject(c, i, f, classTypes[j], entity);
+            }
+        }
+    }
+
+    /**
+     * 新建实体，有生成类时不经过反射
+     */
+    public Object newInstance() throws Exception {
+        if (adapter != null) {
+            return adapter.newInstance();
+        }
+        return ClassUtil.newInstance(claxx);
+    }
+
+    private static void injectPrimitive(Cursor c, int i, Field f, int classType, Object entity) throws Exception {
+        switch (classType) {
+            case DataUtil.CLASS_TYPE_BOOLEAN:
+                f.setBoolean(entity, Boolean.parseBoolean(c.getString(i)));
+                break;
+            case DataUtil.CLASS_TYPE_LONG:
+                f.setLong(entity, c.getLong(i));
+                break;
+            case DataUtil.CLASS_TYPE_INT:
+                f.setInt(entity, c.getInt(i));
+                break;
+            case DataUtil.CLASS_TYPE_DOUBLE:
+                f.setDouble(entity, c.getDouble(i));
+                break;
+            case DataUtil.CLASS_TYPE_FLOAT:
+                f.setFloat(entity, c.getFloat(i));
+                break;
+            case DataUtil.CLASS_TYPE_SHORT:
+                f.setShort(entity, c.getShort(i));
+                break;
+            case DataUtil.CLASS_TYPE_BYTE:
+                String b = c.getString(i);
+                // 实体可能被多行复用，NULL 也要覆盖
+                f.setByte(entity, b != null ? Byte.parseByte(b) : 0);
+                break;
+            case DataUtil.CLASS_TYPE_CHAR:
+                String s = c.getString(i);
+                f.setChar(entity, !Checker.isEmpty(s) ? s.charAt(0) : '\0');
+                break;
+            default:
+                injectObject(c, i, f, classType, entity);
+                break;
+        }
+    }
+
+    private static void injectObject(Cursor c, int i, Field f, int classType, Object entity) throws Exception {
+        switch (classType) {
+            case DataUtil.CLASS_TYPE_STRING:
+                f.set(entity, c.getString(i));
+                break;
+            case DataUtil.CLASS_TYPE_BOOLEAN:
+                f.set(entity, Boolean.parseBoolean(c.getString(i)));
+                break;
+            case DataUtil.CLASS_TYPE_LONG:
+                f.set(entity, c.getLong(i));
+                break;
+            case DataUtil.CLASS_TYPE_INT:
+                f.set(entity, c.getInt(i));
+                break;
+            case DataUtil.CLASS_TYPE_DOUBLE:
+                f.set(entity, c.getDouble(i));
+                break;
+            case DataUtil.CLASS_TYPE_FLOAT:
+                f.set(entity, c.getFloat(i));
+                break;
+            case DataUtil.CLASS_TYPE_SHORT:
+                f.set(entity, c.getShort(i));
+                break;
+            case DataUtil.CLASS_TYPE_BYTE:
+                String b = c.getString(i);
+                f.set(entity, b != null ? Byte.valueOf(b) : null);
+                break;
+            case DataUtil.CLASS_TYPE_BYTE_ARRAY:
+                f.set(entity, c.getBlob(i));
+                break;
+            case DataUtil.CLASS_TYPE_CHAR:
+                String s = c.getString(i);
+                f.set(entity, !Checker.isEmpty(s) ? Character.valueOf(s.charAt(0)) : null);
+                break;
+            case DataUtil.CLASS_TYPE_DATE:
+                f.set(entity, new Date(c.getLong(i)));
+                break;
+            case DataUtil.CLASS_TYPE_SERIALIZABLE:
+                byte[] bytes = c.getBlob(i);
+                //序列化的对象
+                f.set(entity, bytes != null ? DataUtil.byteToObject(bytes) : null);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 获取列名对应的属性(包括主键)
+     */
+    private static Property getColumnProperty(EntityTable table, String col) {
+        Property p = null;
+        if (!Checker.isEmpty(table.pmap)) {
+            p = table.pmap.get(col);
+        }
+        if (p == null && table.key != null && col.equals(table.key.column)) {
+            p = table.key;
+        }
+        return p;
+    }
+
+    private static int indexOf(String[] columns, String col) {
+        if (col != null) {
+            for (int i = 0; i < columns.length; i++) {
+                if (col.equals(columns[i])) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static String layoutOf(String[] columns) {
+        if (columns.length == 1) {
+            return columns[0];
+        }
+        StringBuilder sb = new StringBuilder();
+        for (String col : columns) {
+            sb.append(col).append(',');
+        }
+        return sb.toString();
+    }
+}
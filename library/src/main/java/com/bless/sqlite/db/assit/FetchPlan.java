@@ -0,0 +1,148 @@
+package com.bless.sqlite.db.assit;
+
+import com.bless.sqlite.db.model.MapProperty;
+
+import java.util.HashMap;
+
+/**
+ * 级联查询的加载计划：加载哪些关联、加载多深。
+ * <p>
+ * 关联路径由关联属性名以 "." 连接，如 "orders.items" 加载 orders 及每个 order 的 items，
+ * 路径之外的关联不加载(懒加载的关联也不注入)。未指定路径时加载全部关联。
+ * 最大深度限制从查询实体开始经过的关联层数，如深度为1只加载查询实体的直接关联。
+ * <pre>
+ * QueryBuilder.create(User.class).fetch("orders.items", "profile").fetchDepth(2);
+ * </pre>
+ * 构建完成后不可变，可以在多个线程中共用。
+ */
+public final class FetchPlan {
+    public static final int UNLIMITED = Integer.MAX_VALUE;
+
+    /**
+     * 加载全部关联，不限深度，即默认的级联查询
+     */
+    public static final FetchPlan ALL = new FetchPlan(null, UNLIMITED);
+
+    private final String[] paths;
+    private final int maxDepth;
+    private final Node root;
+    private int nodeCount;
+
+    private FetchPlan(String[] paths, int maxDepth) {
+        if (maxDepth < 0) {
+            throw new IllegalArgumentException("invalid fetch depth:" + maxDepth);
+        }
+        this.paths = paths;
+        this.maxDepth = maxDepth;
+        if (Checker.isEmpty(paths)) {
+            root = new Node(null, maxDepth);
+        } else {
+            root = new Node(new HashMap<String, Node>(), maxDepth);
+            for (String path : paths) {
+                Node node = root;
+                for (String name : path.split("\\.")) {
+                    name = name.trim();
+                    if (name.length() == 0) {
+                        throw new IllegalArgumentException("invalid fetch path:" + path);
+                    }
+                    Node child = node.children.get(name);
+                    if (child == null) {
+                        child = new Node(new HashMap<String, Node>(), node.depth - 1);
+                        node.children.put(name, child);
+                    }
+                    node = child;
+                }
+            }
+        }
+    }
+
+    /**
+     * 只加载指定路径的关联
+     */
+    public static FetchPlan paths(String... paths) {
+        return new FetchPlan(paths, UNLIMITED);
+    }
+
+    /**
+     * 加载全部关联，限制深度
+     */
+    public static FetchPlan depth(int maxDepth) {
+        return new FetchPlan(null, maxDepth);
+    }
+
+    /**
+     * 增加路径，返回新的计划
+     */
+    public FetchPlan withPaths(String... more) {
+        if (Checker.isEmpty(paths)) {
+            return new FetchPlan(more, maxDepth);
+        }
+        String[] all = new String[paths.length + more.length];
+        System.arraycopy(paths, 0, all, 0, paths.length);
+        System.arraycopy(more, 0, all, paths.length, more.length);
+        return new FetchPlan(all, maxDepth);
+    }
+
+    /**
+     * 修改最大深度，返回新的计划
+     */
+    public FetchPlan withDepth(int maxDepth) {
+        return new FetchPlan(paths, maxDepth);
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * 查询实体所在的节点
+     */
+    public Node getRoot() {
+        return root;
+    }
+
+    private synchronized int nextId() {
+        return nodeCount++;
+    }
+
+    /**
+     * 计划中的一层，决定这一层的实体要加载哪些关联
+     */
+    public final class Node {
+        /**
+         * 计划内唯一，同一实体在不同节点按各自的计划加载
+         */
+        public final int id;
+        private final HashMap<String, Node> children;
+        private final int depth;
+        private Node next;
+
+        private Node(HashMap<String, Node> children, int depth) {
+            this.id = nextId();
+            this.children = children;
+            this.depth = depth;
+        }
+
+        /**
+         * 关联实体所在的节点，不需要加载时返回null
+         */
+        public Node child(MapProperty mp) {
+            if (depth <= 0) {
+                return null;
+            }
+            if (children != null) {
+                Node child = children.get(mp.field.getName());
+                return child != null ? child : children.get(mp.column);
+            }
+            if (depth == UNLIMITED) {
+                return this;
+            }
+            synchronized (this) {
+                if (next == null) {
+                    next = new Node(null, depth - 1);
+                }
+                return next;
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.bless.sqlite.db.assit;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.bless.sqlite.db.TableManager;
+
+import java.util.ArrayList;
+
+/**
+ * 预编译查询，由 {@link QueryBuilder#prepare()} 构建。
+ * <p>
+ * sql语句只构建一次，结果列与属性的对应关系在第一次查询时确定，之后每次执行仅绑定新的参数。
+ * sql文本固定不变，SQLite连接内部的已编译语句缓存也总能命中。
+ * 对象不可变(列映射除外，其为一次性的无害竞争)，可以在多个线程中共用。
+ * 通过 {@link com.bless.sqlite.db.DataBase#query(PreparedQuery, Object...)} 执行，单独操作、级联操作均可使用。
+ */
+public final class PreparedQuery<T> {
+    private final Class<T> clazz;
+    private final String tableName;
+    private final String sql;
+    private final Object[] defaultArgs;
+    private final int argCount;
+    private final FetchPlan fetchPlan;
+    private volatile EntityMapper mapper;
+
+    PreparedQuery(Class<T> clazz, String tableName, String sql, Object[] defaultArgs, FetchPlan fetchPlan) {
+        this.clazz = clazz;
+        this.tableName = tableName;
+        this.sql = sql;
+        this.defaultArgs = defaultArgs;
+        this.argCount = countHolders(sql);
+        this.fetchPlan = fetchPlan;
+    }
+
+    public Class<T> getQueryClass() {
+        return clazz;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * 占位符(?)数量
+     */
+    public int getArgCount() {
+        return argCount;
+    }
+
+    /**
+     * 级联查询的加载计划
+     */
+    public FetchPlan getFetchPlan() {
+        return fetchPlan;
+    }
+
+    /**
+     * 构建本次执行的语句
+     *
+     * @param args 按序对应sql中的占位符，为空时使用构建时 where 语句中的参数
+     */
+    public SQLStatement createStatement(Object... args) {
+        Object[] bindArgs = Checker.isEmpty(args) ? defaultArgs : args;
+        int size = bindArgs == null ? 0 : bindArgs.length;
+        if (size != argCount) {
+            throw new IllegalArgumentException("PreparedQuery needs " + argCount + " args, but got " + size
+                                               + ", sql: " + sql);
+        }
+        return new SQLStatement(sql, bindArgs);
+    }
+
+    /**
+     * 获取结果行映射计划，在第一次查询时确定。
+     */
+    public EntityMapper getMapper(Cursor c) {
+        EntityMapper m = mapper;
+        if (m == null) {
+            m = EntityMapper.of(TableManager.getTable(clazz, false), c);
+            mapper = m;
+        }
+        return m;
+    }
+
+    /**
+     * 将当前行注入实体
+     */
+    public void injectDataToObject(Cursor c, Object entity) throws Exception {
+        getMapper(c).inject(c, entity);
+    }
+
+    /**
+     * 执行查询，仅处理本表数据。
+     */
+    public ArrayList<T> query(SQLiteDatabase db, Object... args) {
+        final ArrayList<T> list = new ArrayList<T>();
+        Querier.doQuery(db, createStatement(args), new Querier.CursorParser() {
+            @Override
+            public void parseEachCursor(SQLiteDatabase db, Cursor c) throws Exception {
+                EntityMapper m = getMapper(c);
+                @SuppressWarnings("unchecked")
+                T t = (T) m.newInstance();
+                m.inject(c, t);
+                list.add(t);
+            }
+        });
+        return list;
+    }
+
+    /**
+     * 统计sql中的占位符，忽略字符串常量中的问号
+     */
+    private static int countHolders(String sql) {
+        int count = 0;
+        boolean quoted = false;
+        for (int i = 0, len = sql.length(); i < len; i++) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (c == '?' && !quoted) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return "PreparedQuery [sql=" + sql + ", argCount=" + argCount + "]";
+    }
+}
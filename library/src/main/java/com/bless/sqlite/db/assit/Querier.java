@@ -19,7 +19,7 @@ public class Querier {
         if (Log.isPrint) {
             Log.d(TAG, "----> Query Start: " + st.toString());
         }
-        Cursor cursor = db.rawQuery(st.sql, (String[]) st.bindArgs);
+        Cursor cursor = TypedCursorFactory.rawQuery(db, st.sql, st.bindArgs);
         if (cursor != null) {
             parser.process(db, cursor);
             if (Log.isPrint) {
@@ -1,7 +1,13 @@
 package com.bless.sqlite.db.assit;
 
 import com.bless.sqlite.db.TableManager;
+import com.bless.sqlite.db.model.EntityTable;
+import com.bless.sqlite.db.model.Page;
+import com.bless.sqlite.db.model.Property;
+import com.bless.sqlite.db.utils.FieldUtil;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.regex.Pattern;
 
 /**
@@ -38,6 +44,11 @@ public class QueryBuilder<T> {
     protected String order;
     protected String limit;
     protected WhereBuilder whereBuilder;
+    protected String[] seekColumns;
+    protected boolean seekDesc;
+    protected int pageSize;
+    protected Object[] seekAfter;
+    protected FetchPlan fetchPlan;
 
     public Class<T> getQueryClass() {
         return clazz;
@@ -262,6 +273,122 @@ public class QueryBuilder<T> {
         return this;
     }
 
+    /**
+     * 键集分页：按分页列升序，每页最多 pageSize 条，配合 {@link #seekAfter(Object...)} 从上一页末尾继续，
+     * 每页只扫描本页数据，不随页数增加而变慢。
+     * <p>
+     * 分页列组合必须唯一且不为NULL，最好有索引，不填默认为主键。
+     * 使用分页时不能再设置 orderBy 和 limit。
+     *
+     * @param columns 列名,注意不是对象的属性名。
+     */
+    public QueryBuilder<T> seek(int pageSize, String... columns) {
+        return seek(pageSize, false, columns);
+    }
+
+    /**
+     * 键集分页，按分页列降序
+     *
+     * @see #seek(int, String...)
+     */
+    public QueryBuilder<T> seekDesc(int pageSize, String... columns) {
+        return seek(pageSize, true, columns);
+    }
+
+    private QueryBuilder<T> seek(int pageSize, boolean desc, String... columns) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("invalid page size:" + pageSize);
+        }
+        if (Checker.isEmpty(columns)) {
+            EntityTable table = TableManager.getTable(clazz);
+            if (table.key == null) {
+                throw new IllegalArgumentException(clazz.getName() + " has no primary key, set the seek columns");
+            }
+            columns = new String[]{table.key.column};
+        }
+        this.pageSize = pageSize;
+        this.seekDesc = desc;
+        this.seekColumns = columns;
+        return this;
+    }
+
+    /**
+     * 从上一页末尾继续，不调用则查询第一页
+     *
+     * @param lastKey 上一页的 {@link Page#getNextKey()}，与分页列一一对应
+     */
+    public QueryBuilder<T> seekAfter(Object... lastKey) {
+        if (lastKey != null) {
+            if (seekColumns == null || lastKey.length != seekColumns.length) {
+                throw new IllegalArgumentException("seek key must match the seek columns");
+            }
+            for (Object o : lastKey) {
+                if (o == null) {
+                    throw new IllegalArgumentException("seek key can not contain null");
+                }
+            }
+        }
+        this.seekAfter = lastKey;
+        return this;
+    }
+
+    /**
+     * 将分页查询(多查询了一条用于判断是否有下一页)的结果转为一页，并取出下一页的起点
+     */
+    public Page<T> toPage(ArrayList<T> list) {
+        if (seekColumns == null) {
+            throw new IllegalStateException("not a seek query, call seek(int, String...) first");
+        }
+        if (list.size() <= pageSize) {
+            return new Page<T>(list, null);
+        }
+        while (list.size() > pageSize) {
+            list.remove(list.size() - 1);
+        }
+        T last = list.get(pageSize - 1);
+        EntityTable table = TableManager.getTable(clazz);
+        Object[] nextKey = new Object[seekColumns.length];
+        try {
+            for (int i = 0; i < seekColumns.length; i++) {
+                Property p = table.key != null && table.key.column.equals(seekColumns[i])
+                        ? table.key : table.pmap == null ? null : table.pmap.get(seekColumns[i]);
+                if (p == null) {
+                    throw new IllegalArgumentException(seekColumns[i] + " is not a column of " + table.name);
+                }
+                nextKey[i] = FieldUtil.get(p.field, last);
+            }
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+        return new Page<T>(list, nextKey);
+    }
+
+    /**
+     * 级联查询只加载指定路径的关联，如 "orders.items"，路径由关联属性名以 "." 连接。
+     * 可多次调用，不存在的属性名被忽略。
+     *
+     * @see FetchPlan
+     */
+    public QueryBuilder<T> fetch(String... paths) {
+        fetchPlan = fetchPlan == null ? FetchPlan.paths(paths) : fetchPlan.withPaths(paths);
+        return this;
+    }
+
+    /**
+     * 级联查询加载关联的最大层数，0为不加载关联
+     */
+    public QueryBuilder<T> fetchDepth(int maxDepth) {
+        fetchPlan = fetchPlan == null ? FetchPlan.depth(maxDepth) : fetchPlan.withDepth(maxDepth);
+        return this;
+    }
+
+    /**
+     * 级联查询的加载计划，未设置时加载全部关联
+     */
+    public FetchPlan getFetchPlan() {
+        return fetchPlan == null ? FetchPlan.ALL : fetchPlan;
+    }
+
     public QueryBuilder<T> queryMappingInfo(Class clazzMapping) {
         this.clazzMapping = clazzMapping;
         return this;
@@ -272,6 +399,51 @@ public class QueryBuilder<T> {
      * 构建查询语句
      */
     public SQLStatement createStatement() {
+        SQLStatement stmt = new SQLStatement();
+        stmt.sql = buildQuerySql();
+        stmt.bindArgs = getBindArgs();
+        return stmt;
+    }
+
+    /**
+     * 构建单列查询语句，其余条件同 {@link #createStatement()}，用于不创建实体的单列查询
+     *
+     * @param column 列名,注意不是对象的属性名。
+     */
+    public SQLStatement createStatementForColumn(String column) {
+        return createStatementForColumns(new String[]{column});
+    }
+
+    /**
+     * 构建指定列的查询语句，其余条件同 {@link #createStatement()}
+     *
+     * @param columns 列名,注意不是对象的属性名。
+     */
+    public SQLStatement createStatementForColumns(String[] columns) {
+        SQLStatement stmt = new SQLStatement();
+        stmt.sql = buildQuerySql(columns);
+        stmt.bindArgs = getBindArgs();
+        return stmt;
+    }
+
+    /**
+     * 构建可重复执行的预编译查询，sql语句仅构建一次，每次执行只需传入新的参数。
+     */
+    public PreparedQuery<T> prepare() {
+        return new PreparedQuery<T>(clazz, getTableName(), buildQuerySql(), getBindArgs(), getFetchPlan());
+    }
+
+    /**
+     * 构建查询sql
+     */
+    private String buildQuerySql() {
+        return buildQuerySql(columns);
+    }
+
+    /**
+     * 构建查询sql，返回指定的列
+     */
+    private String buildQuerySql(String[] columns) {
         if (clazz == null) {
             throw new IllegalArgumentException("U Must Set A Query Entity Class By queryWho(Class) or " +
                     "QueryBuilder(Class)");
@@ -284,6 +456,9 @@ public class QueryBuilder<T> {
             throw new IllegalArgumentException(
                     "invalid LIMIT clauses:" + limit);
         }
+        if (seekColumns != null && (!Checker.isEmpty(order) || !Checker.isEmpty(limit))) {
+            throw new IllegalArgumentException("ORDER BY and LIMIT are built by seek, do not set them");
+        }
 
         StringBuilder query = new StringBuilder(120);
 
@@ -298,17 +473,87 @@ public class QueryBuilder<T> {
         }
         query.append(FROM).append(getTableName());
 
-        query.append(whereBuilder.createWhereString());
+        if (seekColumns == null) {
+            query.append(whereBuilder.createWhereString());
+        } else {
+            appendSeekWhere(query);
+        }
 
         appendClause(query, GROUP_BY, group);
         appendClause(query, HAVING, having);
-        appendClause(query, ORDER_BY, order);
-        appendClause(query, LIMIT, limit);
+        if (seekColumns == null) {
+            appendClause(query, ORDER_BY, order);
+            appendClause(query, LIMIT, limit);
+        } else {
+            query.append(ORDER_BY);
+            for (int i = 0; i < seekColumns.length; i++) {
+                if (i > 0) {
+                    query.append(", ");
+                }
+                query.append(seekColumns[i]).append(seekDesc ? DESC : ASC);
+            }
+            // 多查一条，判断是否有下一页
+            query.append(LIMIT).append(pageSize + 1);
+        }
+        return query.toString();
+    }
 
-        SQLStatement stmt = new SQLStatement();
-        stmt.sql = query.toString();
-        stmt.bindArgs = whereBuilder.transToStringArray();
-        return stmt;
+    /**
+     * 原条件与分页条件 AND 连接。
+     * 不使用行值比较 (a,b) > (?,?)，低版本系统的 SQLite 不支持，展开为：
+     * a >= ? AND (a > ? OR (a = ? AND (b > ?)))，首个条件使 SQLite 能按索引范围扫描。
+     */
+    private void appendSeekWhere(StringBuilder query) {
+        String where = whereBuilder.getWhere();
+        if (seekAfter == null) {
+            query.append(whereBuilder.createWhereString());
+            return;
+        }
+        query.append(WhereBuilder.WHERE);
+        if (!Checker.isEmpty(where)) {
+            query.append('(').append(where).append(')').append(AND);
+        }
+        String gt = seekDesc ? "<?" : ">?";
+        int n = seekColumns.length;
+        if (n == 1) {
+            query.append(seekColumns[0]).append(gt);
+            return;
+        }
+        query.append(seekColumns[0]).append(seekDesc ? "<=?" : ">=?").append(AND).append('(');
+        for (int i = 0; i < n - 1; i++) {
+            query.append(seekColumns[i]).append(gt).append(OR).append('(')
+                 .append(seekColumns[i]).append(EQUAL_HOLDER).append(AND).append('(');
+        }
+        query.append(seekColumns[n - 1]).append(gt);
+        for (int i = 0; i < 2 * n - 1; i++) {
+            query.append(')');
+        }
+    }
+
+    /**
+     * 条件参数，分页时追加分页条件的参数，顺序同 {@link #appendSeekWhere(StringBuilder)}
+     */
+    private Object[] getBindArgs() {
+        Object[] whereArgs = whereBuilder.getWhereArgs();
+        if (seekColumns == null || seekAfter == null) {
+            return whereArgs;
+        }
+        List<Object> args = new ArrayList<Object>();
+        if (whereArgs != null) {
+            for (Object o : whereArgs) {
+                args.add(o);
+            }
+        }
+        int n = seekAfter.length;
+        if (n > 1) {
+            args.add(seekAfter[0]);
+        }
+        for (int i = 0; i < n - 1; i++) {
+            args.add(seekAfter[i]);
+            args.add(seekAfter[i]);
+        }
+        args.add(seekAfter[n - 1]);
+        return args.toArray();
     }
 
     /**
@@ -321,7 +566,7 @@ public class QueryBuilder<T> {
         SQLStatement stmt = new SQLStatement();
         if (whereBuilder != null) {
             query.append(whereBuilder.createWhereString());
-            stmt.bindArgs = whereBuilder.transToStringArray();
+            stmt.bindArgs = whereBuilder.getWhereArgs();
         }
         stmt.sql = query.toString();
         return stmt;
@@ -0,0 +1,226 @@
+package com.bless.sqlite.db.assit;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.bless.sqlite.db.TableManager;
+import com.bless.sqlite.db.model.EntityTable;
+import com.bless.sqlite.log.Log;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+/**
+ * 关系表批量写入。
+ * <p>
+ * 一次事务中所有实体的关系改动先按关系表(及方向)收集，事务结束前调用 {@link #flush} 统一写入：
+ * <ol>
+ * <li>同一关系表的现有关系按 key1 用 IN 分批一次读出</li>
+ * <li>与新的关联主键比较，只删除移除的关系、插入新增的关系</li>
+ * <li>每个关系表的每种写入只编译一个语句，逐行绑定执行</li>
+ * </ol>
+ * 保存上万个带关联的实体时，关系写入只需少数几个已编译语句。对象不是线程安全的，只在一次事务中使用。
+ */
+public final class RelationBatch {
+    private static final String TAG = RelationBatch.class.getSimpleName();
+
+    private final LinkedHashMap<String, Group> groups = new LinkedHashMap<String, Group>();
+
+    /**
+     * 同一关系表、同一方向的改动
+     */
+    private static final class Group {
+        final String mapTableName;
+        final EntityTable table1;
+        final EntityTable table2;
+        /**
+         * key1 -> 新的全部关联主键
+         */
+        final LinkedHashMap<String, LinkedHashSet<String>> syncMap
+                = new LinkedHashMap<String, LinkedHashSet<String>>();
+        /**
+         * 删除全部关系的 key1
+         */
+        final LinkedHashSet<String> deleteSet = new LinkedHashSet<String>();
+
+        Group(String mapTableName, EntityTable table1, EntityTable table2) {
+            this.mapTableName = mapTableName;
+            this.table1 = table1;
+            this.table2 = table2;
+        }
+    }
+
+    private Group group(EntityTable table1, EntityTable table2) {
+        String key = TableManager.getMapTableName(table1, table2) + "#" + table1.name;
+        Group g = groups.get(key);
+        if (g == null) {
+            g = new Group(TableManager.getMapTableName(table1, table2), table1, table2);
+            groups.put(key, g);
+        }
+        return g;
+    }
+
+    /**
+     * key1 的关系同步为 key2s，同一 key1 多次调用时取并集
+     */
+    public void sync(EntityTable table1, EntityTable table2, Object key1, Collection<String> key2s) {
+        Group g = group(table1, table2);
+        String key1Str = String.valueOf(key1);
+        LinkedHashSet<String> set = g.syncMap.get(key1Str);
+        if (set == null) {
+            set = new LinkedHashSet<String>();
+            g.syncMap.put(key1Str, set);
+        }
+        set.addAll(key2s);
+    }
+
+    /**
+     * 删除 key1 的全部关系
+     */
+    public void deleteAll(EntityTable table1, EntityTable table2, Object key1) {
+        group(table1, table2).deleteSet.add(String.valueOf(key1));
+    }
+
+    public boolean isEmpty() {
+        return groups.isEmpty();
+    }
+
+    /**
+     * 写入收集的全部改动，需在事务中调用
+     *
+     * @param tableManager 用于检查及建立关系表，为null时不检查
+     * @return 删除及插入的关系数
+     */
+    public int flush(SQLiteDatabase db, TableManager tableManager) throws Exception {
+        int count = 0;
+        for (Group g : groups.values()) {
+            if (tableManager != null) {
+                tableManager.checkOrCreateMappingTable(db, g.table1, g.table2);
+            }
+            count += flushDelete(db, g);
+            count += flushSync(db, g);
+        }
+        groups.clear();
+        return count;
+    }
+
+    private int flushDelete(SQLiteDatabase db, Group g) throws Exception {
+        if (g.deleteSet.isEmpty()) {
+            return 0;
+        }
+        String sql = SQLBuilder.buildMappingDeleteSql(g.mapTableName, (Object) null, g.table1).sql;
+        StatementCache cache = StatementCache.of(db);
+        SQLiteStatement stmt = cache != null ? cache.acquire(sql) : db.compileStatement(sql);
+        try {
+            for (String key1 : g.deleteSet) {
+                stmt.bindString(1, key1);
+                stmt.execute();
+            }
+        } finally {
+            release(cache, sql, stmt);
+        }
+        if (Log.isPrint) {
+            Log.v(TAG, "Delete all mapping of " + g.deleteSet.size() + " entities in " + g.mapTableName);
+        }
+        return g.deleteSet.size();
+    }
+
+    private int flushSync(final SQLiteDatabase db, final Group g) throws Exception {
+        if (g.syncMap.isEmpty()) {
+            return 0;
+        }
+        // 1. 读出现有关系
+        final HashMap<String, HashSet<String>> oldMap = new HashMap<String, HashSet<String>>();
+        CollSpliter.split(g.syncMap.keySet(), SQLStatement.IN_TOP_LIMIT, new CollSpliter.Spliter<String>() {
+            @Override
+            public int oneSplit(ArrayList<String> list) throws Exception {
+                SQLStatement relationSql = SQLBuilder.buildQueryRelationSql(g.table1.claxx, g.table2.claxx, list);
+                Querier.doQuery(db, relationSql, new Querier.CursorParser() {
+                    int index1 = -1;
+                    int index2;
+
+                    @Override
+                    public void parseEachCursor(SQLiteDatabase db, Cursor c) throws Exception {
+                        if (index1 < 0) {
+                            index1 = c.getColumnIndex(g.table1.name);
+                            index2 = c.getColumnIndex(g.table2.name);
+                        }
+                        String key1 = c.getString(index1);
+                        String key2 = c.getString(index2);
+                        if (key1 == null || key2 == null) {
+                            return;
+                        }
+                        HashSet<String> set = oldMap.get(key1);
+                        if (set == null) {
+                            set = new HashSet<String>();
+                            oldMap.put(key1, set);
+                        }
+                        set.add(key2);
+                    }
+                });
+                return 0;
+            }
+        });
+
+        // 2. 比较得出移除及新增的关系，[key1, key2, key1, key2...]
+        ArrayList<String> removed = new ArrayList<String>();
+        ArrayList<String> added = new ArrayList<String>();
+        for (Map.Entry<String, LinkedHashSet<String>> en : g.syncMap.entrySet()) {
+            String key1 = en.getKey();
+            HashSet<String> olds = oldMap.get(key1);
+            for (String key2 : en.getValue()) {
+                if (olds == null || !olds.remove(key2)) {
+                    added.add(key1);
+                    added.add(key2);
+                }
+            }
+            if (olds != null) {
+                for (String key2 : olds) {
+                    removed.add(key1);
+                    removed.add(key2);
+                }
+            }
+        }
+
+        // 3. 每种写入一个已编译语句
+        if (!removed.isEmpty()) {
+            execPairs(db, SQLBuilder.buildMappingDeletePairSql(g.mapTableName, g.table1, g.table2), removed);
+        }
+        if (!added.isEmpty()) {
+            execPairs(db, SQLBuilder.buildMappingInsertPairSql(g.mapTableName, g.table1, g.table2), added);
+        }
+        if (Log.isPrint) {
+            Log.v(TAG, "Sync mapping " + g.mapTableName + " of " + g.syncMap.size() + " entities, removed: "
+                       + removed.size() / 2 + ", added: " + added.size() / 2);
+        }
+        return (removed.size() + added.size()) / 2;
+    }
+
+    private static void execPairs(SQLiteDatabase db, String sql, ArrayList<String> pairs) {
+        StatementCache cache = StatementCache.of(db);
+        SQLiteStatement stmt = cache != null ? cache.acquire(sql) : db.compileStatement(sql);
+        try {
+            for (int i = 0, size = pairs.size(); i < size; i += 2) {
+                stmt.bindString(1, pairs.get(i));
+                stmt.bindString(2, pairs.get(i + 1));
+                stmt.execute();
+            }
+        } finally {
+            release(cache, sql, stmt);
+        }
+    }
+
+    private static void release(StatementCache cache, String sql, SQLiteStatement stmt) {
+        if (cache != null) {
+            cache.release(sql, stmt);
+        } else {
+            stmt.close();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.bless.sqlite.db.assit;
+
+/**
+ * 逐行扫描查询结果的回调，见 {@link com.bless.sqlite.db.DataBase#scan(QueryBuilder, RowVisitor)}。
+ * <p>
+ * 所有行共用同一个实体对象，每行只覆盖查询到的列，回调返回后对象即被下一行覆盖，
+ * 需要保留的数据应在回调中复制出来。
+ * 关联对象不会被加载。
+ */
+public abstract class RowVisitor<T> {
+    private boolean stop;
+
+    /**
+     * 访问一行
+     *
+     * @param entity 共用的实体对象，已填充当前行
+     */
+    public abstract void visit(T entity) throws Exception;
+
+    /**
+     * 停止扫描，当前回调返回后不再读取后面的行
+     */
+    public final void stopParse() {
+        stop = true;
+    }
+
+    final boolean isStopped() {
+        return stop;
+    }
+}
@@ -15,8 +15,11 @@ import com.bless.sqlite.db.enums.AssignType;
 import com.bless.sqlite.db.model.ColumnsValue;
 import com.bless.sqlite.db.model.ConflictAlgorithm;
 import com.bless.sqlite.db.model.EntityTable;
+import com.bless.sqlite.db.model.LazyList;
+import com.bless.sqlite.db.model.LazyToOne;
 import com.bless.sqlite.db.model.MapInfo;
 import com.bless.sqlite.db.model.MapProperty;
+import com.bless.sqlite.db.model.Primarykey;
 import com.bless.sqlite.db.model.Property;
 import com.bless.sqlite.db.utils.ClassUtil;
 import com.bless.sqlite.db.utils.DataUtil;
@@ -26,8 +29,10 @@ import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.Set;
 
 public class SQLBuilder {
 
@@ -37,6 +42,11 @@ public class SQLBuilder {
     public static final String DELETE_FROM = "DELETE FROM ";
     public static final String SELECT_TABLES = "SELECT * FROM sqlite_master WHERE type='table' ORDER BY name";
     public static final String PRAGMA_TABLE_INFO = "PRAGMA table_info(";
+    public static final String SELECT_VERSION = "SELECT sqlite_version()";
+    /**
+     * 记录实体表结构指纹的元数据表
+     */
+    public static final String SCHEMA_TABLE = "dsqlite_schema";
     public static final String PARENTHESES_LEFT = "(";
     public static final String PARENTHESES_RIGHT = ")";
     public static final String IN = " IN ";
@@ -52,6 +62,8 @@ public class SQLBuilder {
     public static final String CREATE = "CREATE ";
     public static final String TEMP = "TEMP ";
     public static final String TABLE_IF_NOT_EXISTS = "TABLE IF NOT EXISTS ";
+    public static final String INDEX_IF_NOT_EXISTS = "INDEX IF NOT EXISTS ";
+    public static final String WITHOUT_ROWID = " WITHOUT ROWID";
     public static final String PRIMARY_KEY_AUTOINCREMENT = "PRIMARY KEY AUTOINCREMENT ";
     public static final String PRIMARY_KEY = "PRIMARY KEY ";
     public static final String COMMA = ",";
@@ -78,6 +90,16 @@ public class SQLBuilder {
     public static final String NOT = " NOT ";
     public static final String ASTERISK = "*";
 
+    /**
+     * 联表查询中关系 key1 的列别名，以 {@link EntityMapper#ALIAS_PREFIX} 开头
+     */
+    public static final String JOIN_KEY1 = EntityMapper.ALIAS_PREFIX + "key1";
+
+    /**
+     * 联表查询结果中不属于实体的列，映射时跳过，见 {@link EntityMapper#of(EntityTable, android.database.Cursor, Set)}
+     */
+    public static final Set<String> JOIN_EXTRA_COLUMNS = Collections.singleton(JOIN_KEY1);
+
     /**
      * 构建【获取SQLite全部表】sql语句
      */
@@ -122,6 +144,9 @@ public class SQLBuilder {
      * such as : CREATE TABLE IF NOT EXISTS table-name (_id INTEGER PRIMARY KEY AUTOINCREMENT ,xx TEXT)
      */
     public static SQLStatement buildCreateTable(EntityTable table) {
+        if (table.createTableSql != null) {
+            return new SQLStatement(table.createTableSql, null);
+        }
         StringBuilder sb = new StringBuilder();
         sb.append(CREATE);
         if (table.getAnnotation(Temporary.class) != null) {
@@ -220,6 +245,109 @@ public class SQLBuilder {
         return new SQLStatement(sb.toString(), null);
     }
 
+    /**
+     * 构建【关系表】sql语句，两列类型与两个实体的主键一致，以两列为联合主键
+     * create table if not exists {map table} (col1 TYPE, col2 TYPE, PRIMARY KEY (col1, col2)) [WITHOUT ROWID]
+     * 两列按关系表名中的顺序排列，与方向无关
+     */
+    public static SQLStatement buildCreateMappingTable(String mapTableName, EntityTable table1, EntityTable table2,
+            boolean withoutRowId) {
+        if (table1.name.compareTo(table2.name) > 0) {
+            EntityTable t = table1;
+            table1 = table2;
+            table2 = t;
+        }
+        StringBuilder sb = new StringBuilder(128);
+        sb.append(CREATE).append(TABLE_IF_NOT_EXISTS).append(mapTableName).append(PARENTHESES_LEFT)
+          .append(table1.name).append(getKeyDataType(table1)).append(COMMA)
+          .append(table2.name).append(getKeyDataType(table2)).append(COMMA)
+          .append(PRIMARY_KEY).append(PARENTHESES_LEFT).append(table1.name).append(COMMA).append(table2.name)
+          .append(PARENTHESES_RIGHT).append(PARENTHESES_RIGHT);
+        if (withoutRowId) {
+            sb.append(WITHOUT_ROWID);
+        }
+        return new SQLStatement(sb.toString(), null);
+    }
+
+    /**
+     * 构建关系表的反向索引，主键只能按第一列查找，另一方向查找用此索引
+     * create index if not exists {map table}_{col2} on {map table} (col2, col1)
+     */
+    public static SQLStatement buildCreateMappingIndex(String mapTableName, EntityTable table1, EntityTable table2) {
+        if (table1.name.compareTo(table2.name) > 0) {
+            EntityTable t = table1;
+            table1 = table2;
+            table2 = t;
+        }
+        return new SQLStatement(CREATE + INDEX_IF_NOT_EXISTS + mapTableName + "_" + table2.name + " ON "
+                                + mapTableName + PARENTHESES_LEFT + table2.name + COMMA + table1.name
+                                + PARENTHESES_RIGHT, null);
+    }
+
+    /**
+     * 构建复制旧关系表数据的语句，重复及不完整的关系被丢弃
+     * insert or ignore into {new table} (col1, col2) select col1, col2 from {old table}
+     * where col1 is not null and col2 is not null
+     */
+    public static SQLStatement buildCopyMappingSql(String fromTable, String toTable, String column1, String column2) {
+        return new SQLStatement(INSERT + "OR IGNORE " + INTO + toTable + PARENTHESES_LEFT + column1 + COMMA + column2
+                                + PARENTHESES_RIGHT + BLANK + SELECT + column1 + COMMA + column2 + FROM + fromTable
+                                + WHERE + column1 + " IS NOT NULL" + AND + column2 + " IS NOT NULL", null);
+    }
+
+    /**
+     * 构建【表结构指纹元数据表】建表语句
+     */
+    public static SQLStatement buildCreateSchemaTable() {
+        return new SQLStatement(CREATE + TABLE_IF_NOT_EXISTS + SCHEMA_TABLE
+                                + "(name TEXT PRIMARY KEY ,fingerprint INTEGER)", null);
+    }
+
+    /**
+     * 构建【读取全部表结构指纹】sql语句
+     */
+    public static SQLStatement buildQuerySchemaFingerprints() {
+        return new SQLStatement(SELECT + "name,fingerprint" + FROM + SCHEMA_TABLE, null);
+    }
+
+    /**
+     * 构建【保存表结构指纹】sql语句
+     */
+    public static SQLStatement buildSaveSchemaFingerprint(String tableName, long fingerprint) {
+        return new SQLStatement(REPLACE + INTO + SCHEMA_TABLE + "(name,fingerprint) VALUES(?,?)",
+                new Object[]{tableName, fingerprint});
+    }
+
+    /**
+     * 构建【删除表结构指纹】sql语句
+     */
+    public static SQLStatement buildDeleteSchemaFingerprint(String tableName) {
+        return new SQLStatement(DELETE_FROM + SCHEMA_TABLE + WHERE + "name=?", new Object[]{tableName});
+    }
+
+    /**
+     * 构建【读取一张表的建表语句】sql语句
+     */
+    public static SQLStatement buildQueryTableSql(String tableName) {
+        return new SQLStatement(SELECT + "sql" + FROM + "sqlite_master" + WHERE + "type='table'" + AND + "name=?",
+                new Object[]{tableName});
+    }
+
+    /**
+     * 构建表改名语句
+     */
+    public static SQLStatement buildRenameTable(String from, String to) {
+        return new SQLStatement("ALTER TABLE " + from + " RENAME TO " + to, null);
+    }
+
+    private static String getKeyDataType(EntityTable table) {
+        Primarykey key = table.key;
+        if (key.assign == AssignType.AUTO_INCREMENT) {
+            return DataUtil.INTEGER;
+        }
+        return DataUtil.getSQLDataType(key.classType > 0 ? key.classType : DataUtil.getFieldClassType(key.field));
+    }
+
     /**
      * 构建 insert 语句
      */
@@ -234,6 +362,27 @@ public class SQLBuilder {
         return buildInsertSql(entity, false, TYPE_INSERT, algorithm);
     }
 
+    /**
+     * 构建多行批量 insert 语句，sql不绑定值，执行时时会遍历绑定值。
+     * insert [algorithm] into {table} (key,col...) values (?,?...),(?,?...)...
+     *
+     * @param rows 一条语句插入的行数
+     */
+    public static SQLStatement buildInsertBatchSql(Object entity, ConflictAlgorithm algorithm, int rows) {
+        SQLStatement stmt = buildInsertSql(entity, false, TYPE_INSERT, algorithm);
+        if (rows > 1 && stmt.sql != null) {
+            // 单行语句以 (?,?...) 结尾，重复追加即可
+            String holders = stmt.sql.substring(stmt.sql.lastIndexOf(PARENTHESES_LEFT));
+            StringBuilder sql = new StringBuilder(stmt.sql.length() + (holders.length() + 1) * (rows - 1));
+            sql.append(stmt.sql);
+            for (int i = 1; i < rows; i++) {
+                sql.append(COMMA).append(holders);
+            }
+            stmt.sql = sql.toString();
+        }
+        return stmt;
+    }
+
     /**
      * 构建 replace 语句
      */
@@ -637,7 +786,7 @@ public class SQLBuilder {
                     EntityTable table2 = TableManager.getTable(getTypeByRelation(map));
                     // add map table info
                     String mapTableName = TableManager.getMapTableName(table1, table2);
-                    MapInfo.MapTable mi = new MapInfo.MapTable(mapTableName, table1.name, table2.name);
+                    MapInfo.MapTable mi = new MapInfo.MapTable(mapTableName, table1, table2);
                     mapInfo.addTable(mi);
 
                     // add delete mapping sql to map info
@@ -654,7 +803,7 @@ public class SQLBuilder {
 
     /**
      * 构建关系映射语句
-     * 1. 如果是插入或更新数据，先删除旧映射，再建立新映射。
+     * 1. 如果是插入或更新数据，记录新的关联主键，执行时与现有映射比较，只删除移除的、插入新增的映射。
      * 2. 如果是删除，直接删除就映射即可。
      */
     public static MapInfo buildMappingInfo(Object entity, boolean insertNew, TableManager tableManager) {
@@ -670,47 +819,47 @@ public class SQLBuilder {
                     EntityTable table2 = TableManager.getTable(getTypeByRelation(map));
                     // add map table info
                     String mapTableName = TableManager.getMapTableName(table1, table2);
-                    MapInfo.MapTable mi = new MapInfo.MapTable(mapTableName, table1.name, table2.name);
+                    MapInfo.MapTable mi = new MapInfo.MapTable(mapTableName, table1, table2);
                     mapInfo.addTable(mi);
-                    if (tableManager.isSQLMapTableCreated(table1.name, table2.name)) {
-                        // add delete mapping sql to map info
-                        SQLStatement st = buildMappingDeleteSql(key1, table1, table2);
-                        mapInfo.addDelOldRelationSQL(st);
+                    Object mapObject = FieldUtil.get(map.field, entity);
+                    if (map.lazy && insertNew) {
+                        // 未加载的懒加载关联保持原有关系
+                        if (mapObject instanceof LazyList) {
+                            continue;
+                        } else if (mapObject instanceof LazyToOne) {
+                            LazyToOne<?> lazy = (LazyToOne<?>) mapObject;
+                            if (!lazy.isLoaded()) {
+                                continue;
+                            }
+                            mapObject = lazy.peek();
+                        }
                     }
-
                     if (insertNew) {
-                        // also insert new mapping relation
-                        Object mapObject = FieldUtil.get(map.field, entity);
+                        // record new mapping relation, diff with the old one when executing
+                        ArrayList<String> key2List = new ArrayList<String>();
                         if (mapObject != null) {
                             if (map.isToMany()) {
-                                ArrayList<SQLStatement> sqlList;
-                                SQLStatement addSql;
+                                Collection<?> coll;
                                 if (mapObject instanceof Collection<?>) {
-                                    sqlList = buildMappingToManySql(key1, table1, table2, (Collection<?>) mapObject);
-                                    //addSql = buildMappingToManySqlFragment(key1, table1, table2,
-                                    //        (Collection<?>) mapObject);
+                                    coll = (Collection<?>) mapObject;
                                 } else if (mapObject instanceof Object[]) {
-                                    sqlList = buildMappingToManySql(key1, table1, table2,
-                                            Arrays.asList((Object[]) mapObject));
-                                    //addSql = buildMappingToManySqlFragment(key1, table1, table2,
-                                    //        Arrays.asList((Object[]) mapObject));
+                                    coll = Arrays.asList((Object[]) mapObject);
                                 } else {
                                     throw new RuntimeException("OneToMany and ManyToMany Relation," +
                                             " You must use array or collection object");
                                 }
-                                if (Checker.isEmpty(sqlList)) {
-                                    mapInfo.addNewRelationSQL(sqlList);
+                                for (Object obj2 : coll) {
+                                    addKey2(key2List, table2, obj2);
                                 }
-                                //if (addSql != null) {
-                                //    mapInfo.addNewRelationSQL(addSql);
-                                //}
                             } else {
-                                SQLStatement st = buildMappingToOneSql(key1, table1, table2, mapObject);
-                                if (st != null) {
-                                    mapInfo.addNewRelationSQL(st);
-                                }
+                                addKey2(key2List, table2, mapObject);
                             }
                         }
+                        mapInfo.addSyncRelation(new MapInfo.MapRelation(mi, table1, table2, key1, key2List));
+                    } else if (tableManager.isSQLMapTableCreated(table1.name, table2.name)) {
+                        // add delete mapping sql to map info
+                        SQLStatement st = buildMappingDeleteSql(key1, table1, table2);
+                        mapInfo.addDelOldRelationSQL(st);
                     }
                 }
                 return mapInfo;
@@ -721,7 +870,20 @@ public class SQLBuilder {
         return null;
     }
 
-    private static Class getTypeByRelation(MapProperty mp) {
+    private static void addKey2(ArrayList<String> key2List, EntityTable table2, Object obj2)
+            throws IllegalAccessException {
+        if (obj2 != null) {
+            Object key2 = FieldUtil.getAssignedKeyObject(table2.key, obj2);
+            if (key2 != null) {
+                key2List.add(String.valueOf(key2));
+            }
+        }
+    }
+
+    /**
+     * 关联实体的类型
+     */
+    public static Class getTypeByRelation(MapProperty mp) {
         Class calxx;
         if (mp.isToMany()) {
             Class c = mp.field.getType();
@@ -733,6 +895,9 @@ public class SQLBuilder {
                 throw new RuntimeException(
                         "OneToMany and ManyToMany Relation, you must use collection or array object");
             }
+        } else if (mp.lazy) {
+            // LazyToOne<T>
+            calxx = FieldUtil.getGenericType(mp.field);
         } else {
             calxx = mp.field.getType();
         }
@@ -782,6 +947,23 @@ public class SQLBuilder {
         return null;
     }
 
+    /**
+     * 构建SQL语句：删除一条映射关系，供逐行绑定执行
+     * delete from {map table} where {key1}=? and {key2}=?
+     */
+    public static String buildMappingDeletePairSql(String mapTableName, EntityTable table1, EntityTable table2) {
+        return DELETE_FROM + mapTableName + WHERE + table1.name + EQUALS_HOLDER + AND + table2.name + EQUALS_HOLDER;
+    }
+
+    /**
+     * 构建SQL语句：插入一条映射关系，供逐行绑定执行
+     * replace into {map table} ({key1},{key2}) values (?,?)
+     */
+    public static String buildMappingInsertPairSql(String mapTableName, EntityTable table1, EntityTable table2) {
+        return REPLACE + INTO + mapTableName + PARENTHESES_LEFT + table1.name + COMMA + table2.name
+               + PARENTHESES_RIGHT + VALUES + TWO_HOLDER;
+    }
+
     /**
      * 构建N对多关系SQL
      * replace into {table} (col1=?,col2=?) values (v1,v2),(va,vb)...
@@ -947,6 +1129,66 @@ public class SQLBuilder {
         return sqlStatement;
     }
 
+    /**
+     * 构建N对一关联的联表查询语句，关系与关联实体一次查出，关联实体不存在时其列为NULL
+     * select m.{key1} as __key1, t.* from {map table} m left join {table2} t on t.{key} = m.{key2}
+     * where m.{key1} in (?,?...)
+     * 注意：key1List 数量不能超过999
+     */
+    public static SQLStatement buildQueryToOneJoinSql(EntityTable table1, EntityTable table2,
+            List<String> key1List) {
+        StringBuilder sb = new StringBuilder(128);
+        sb.append(SELECT).append("m.").append(table1.name).append(" AS ").append(JOIN_KEY1)
+          .append(",t.*").append(FROM).append(TableManager.getMapTableName(table1, table2)).append(" m")
+          .append(" LEFT JOIN ").append(table2.name).append(" t ON t.").append(table2.key.column)
+          .append("=m.").append(table2.name)
+          .append(WHERE).append("m.").append(table1.name).append(IN).append(PARENTHESES_LEFT);
+        for (int i = 0, size = key1List.size(); i < size; i++) {
+            sb.append(i == 0 ? HOLDER : COMMA_HOLDER);
+        }
+        sb.append(PARENTHESES_RIGHT);
+        SQLStatement sqlStatement = new SQLStatement();
+        sqlStatement.sql = sb.toString();
+        sqlStatement.bindArgs = key1List.toArray(new String[key1List.size()]);
+        return sqlStatement;
+    }
+
+    /**
+     * 构建统计关系数量语句
+     * select count(*) from {map table} where {key1} = ?
+     */
+    public static SQLStatement buildCountRelationSql(EntityTable table1, EntityTable table2, Object key1) {
+        SQLStatement sqlStatement = new SQLStatement();
+        sqlStatement.sql = QueryBuilder.SELECT_COUNT + TableManager.getMapTableName(table1, table2)
+                + WHERE + table1.name + EQUALS_HOLDER;
+        sqlStatement.bindArgs = new String[]{String.valueOf(key1)};
+        return sqlStatement;
+    }
+
+    /**
+     * 构建分页查询关系语句，按key2排序，after 不为null时从 after 之后继续，否则使用 offset
+     * select {key2} from {map table} where {key1} = ? [and {key2} > ?] order by {key2} limit n [offset m]
+     */
+    public static SQLStatement buildQueryRelationPageSql(EntityTable table1, EntityTable table2, Object key1,
+            Object after, int offset, int limit) {
+        StringBuilder sb = new StringBuilder(128);
+        sb.append(SELECT).append(table2.name).append(FROM).append(TableManager.getMapTableName(table1, table2))
+          .append(WHERE).append(table1.name).append(EQUALS_HOLDER);
+        SQLStatement sqlStatement = new SQLStatement();
+        if (after != null) {
+            sb.append(AND).append(table2.name).append(">?");
+            sqlStatement.bindArgs = new String[]{String.valueOf(key1), String.valueOf(after)};
+        } else {
+            sqlStatement.bindArgs = new String[]{String.valueOf(key1)};
+        }
+        sb.append(ORDER_BY).append(table2.name).append(ASC).append(LIMIT).append(limit);
+        if (after == null && offset > 0) {
+            sb.append(" OFFSET ").append(offset);
+        }
+        sqlStatement.sql = sb.toString();
+        return sqlStatement;
+    }
+
     /**
      * 构建查询关系映射语句
      * select * from table2 where key2 = key2;
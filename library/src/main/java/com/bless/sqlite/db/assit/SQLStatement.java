@@ -2,13 +2,12 @@ package com.bless.sqlite.db.assit;
 
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteProgram;
 import android.database.sqlite.SQLiteStatement;
 import android.os.Build;
 
 import com.bless.sqlite.db.model.EntityTable;
 import com.bless.sqlite.db.model.MapInfo;
-import com.bless.sqlite.db.model.Property;
-import com.bless.sqlite.db.utils.ClassUtil;
 import com.bless.sqlite.db.TableManager;
 import com.bless.sqlite.db.model.ColumnsValue;
 import com.bless.sqlite.db.utils.DataUtil;
@@ -22,6 +21,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
 
 /**
  * sql语句构造与执行
@@ -33,6 +33,10 @@ public class SQLStatement implements Serializable {
     public static final short NONE = -1;
     public static final short NORMAL = 0;
     public static final int IN_TOP_LIMIT = 999;
+    /**
+     * 多行 VALUES 语句一次最多插入的行数(旧版本SQLite的 SQLITE_MAX_COMPOUND_SELECT 为500)
+     */
+    public static final int BATCH_ROWS_LIMIT = 500;
     /**
      * sql语句
      */
@@ -45,6 +49,10 @@ public class SQLStatement implements Serializable {
      * sql语句执行者，私有(private)。
      */
     private SQLiteStatement mStatement;
+    /**
+     * 语句缓存，mStatement 从缓存取出时不为空，释放时放回缓存。
+     */
+    private transient StatementCache mCache;
 
     public SQLStatement() {}
 
@@ -59,22 +67,31 @@ public class SQLStatement implements Serializable {
      * @param i The 1-based index to the parameter to bind null to
      */
     protected void bind(int i, Object o) throws IOException {
+        bind(mStatement, i, o);
+    }
+
+    /**
+     * 按值的类型给语句(或查询)的占位符绑定值
+     *
+     * @param i The 1-based index to the parameter to bind null to
+     */
+    public static void bind(SQLiteProgram program, int i, Object o) throws IOException {
         if (o == null) {
-            mStatement.bindNull(i);
+            program.bindNull(i);
         } else if (o instanceof CharSequence || o instanceof Boolean || o instanceof Character) {
-            mStatement.bindString(i, String.valueOf(o));
+            program.bindString(i, String.valueOf(o));
         } else if (o instanceof Float || o instanceof Double) {
-            mStatement.bindDouble(i, ((Number) o).doubleValue());
+            program.bindDouble(i, ((Number) o).doubleValue());
         } else if (o instanceof Number) {
-            mStatement.bindLong(i, ((Number) o).longValue());
+            program.bindLong(i, ((Number) o).longValue());
         } else if (o instanceof Date) {
-            mStatement.bindLong(i, ((Date) o).getTime());
+            program.bindLong(i, ((Date) o).getTime());
         } else if (o instanceof byte[]) {
-            mStatement.bindBlob(i, (byte[]) o);
+            program.bindBlob(i, (byte[]) o);
         } else if (o instanceof Serializable) {
-            mStatement.bindBlob(i, DataUtil.objectToByte(o));
+            program.bindBlob(i, DataUtil.objectToByte(o));
         } else {
-            mStatement.bindNull(i);
+            program.bindNull(i);
         }
     }
 
@@ -95,17 +112,22 @@ public class SQLStatement implements Serializable {
 
     /**
      * 插入数据，为其注入ID（如果需要），关系表也一并处理。
+     * 未设置参数(bindArgs)时，直接从实体按属性类型绑定值。
      */
     public long execInsertWithMapping(SQLiteDatabase db, Object entity, TableManager tableManager)
             throws IllegalAccessException, IOException {
         printSQL();
-        mStatement = db.compileStatement(sql);
+        mStatement = compileStatement(db);
         Object keyObj = null;
+        EntityBinder binder = null;
         if (!Checker.isEmpty(bindArgs)) {
             keyObj = bindArgs[0];
             for (int i = 0; i < bindArgs.length; i++) {
                 bind(i + 1, bindArgs[i]);
             }
+        } else if (entity != null) {
+            binder = EntityBinder.of(TableManager.getTable(entity));
+            binder.bindInsert(mStatement, 1, entity);
         }
         long rowID = NONE;
         try {
@@ -116,7 +138,9 @@ public class SQLStatement implements Serializable {
         if (Log.isPrint) {
             Log.i(TAG, "SQL Execute Insert RowID --> " + rowID + "    sql: " + sql);
         }
-        if (entity != null) {
+        if (binder != null) {
+            binder.setKeyValueIfNeed(entity, rowID);
+        } else if (entity != null) {
             FieldUtil.setKeyValueIfneed(entity, TableManager.getTable(entity).key, keyObj, rowID);
         }
         if (tableManager != null) {
@@ -139,33 +163,22 @@ public class SQLStatement implements Serializable {
         if (Log.isPrint) {
             Log.i(TAG, "----> BeginTransaction[insert col]");
         }
-        EntityTable table = null;
+        EntityBinder binder = null;
         try {
-            mStatement = db.compileStatement(sql);
+            mStatement = compileStatement(db);
             Iterator<?> it = list.iterator();
             boolean mapTableCheck = true;
             while (it.hasNext()) {
                 mStatement.clearBindings();
                 Object obj = it.next();
 
-                if (table == null) {
-                    table = TableManager.getTable(obj);
-                }
-
-                int j = 1;
-                Object keyObj = null;
-                if (table.key != null) {
-                    keyObj = FieldUtil.getAssignedKeyObject(table.key, obj);
-                    bind(j++, keyObj);
-                }
-                if (!Checker.isEmpty(table.pmap)) {
-                    // 第一个是主键。其他属性从2开始。
-                    for (Property p : table.pmap.values()) {
-                        bind(j++, FieldUtil.get(p.field, obj));
-                    }
+                if (binder == null) {
+                    binder = EntityBinder.of(TableManager.getTable(obj));
                 }
+                // 第一个是主键。其他属性从2开始。
+                binder.bindInsert(mStatement, 1, obj);
                 long rowID = mStatement.executeInsert();
-                FieldUtil.setKeyValueIfneed(obj, table.key, keyObj, rowID);
+                binder.setKeyValueIfNeed(obj, rowID);
                 if (tableManager != null) {
                     mapRelationToDb(obj, true, mapTableCheck, db, tableManager);
                     mapTableCheck = false;
@@ -191,23 +204,61 @@ public class SQLStatement implements Serializable {
         return NONE;
     }
 
+    /**
+     * 执行多行批量插入：insert into {table} (...) values (...),(...)...
+     * 语句的行数须与 list 数量一致，由 {@link SQLBuilder#buildInsertBatchSql} 构建。
+     * 系统分配的主键依据最后插入的 rowID 倒推注入实体，调用方需保证这批实体都未设置主键或都已设置主键，
+     * 且冲突算法不会跳过任何一行。
+     *
+     * @return 插入的行数
+     */
+    public int execInsertBatch(SQLiteDatabase db, List<?> list) throws IOException, IllegalAccessException {
+        printSQL();
+        EntityBinder binder = EntityBinder.of(TableManager.getTable(list.get(0)));
+        int size = list.size();
+        mStatement = compileStatement(db);
+        long rowID;
+        try {
+            int j = 1;
+            for (int i = 0; i < size; i++) {
+                j = binder.bindInsert(mStatement, j, list.get(i));
+            }
+            rowID = mStatement.executeInsert();
+        } finally {
+            realease();
+        }
+        if (Log.isPrint) {
+            Log.i(TAG, "Exec insert batch [" + size + "] rows , last RowID --> " + rowID);
+        }
+        // 同一语句内的多行依次分配 rowID
+        long firstRowID = rowID - size + 1;
+        for (int i = 0; i < size; i++) {
+            binder.setKeyValueIfNeed(list.get(i), firstRowID + i);
+        }
+        return size;
+    }
+
     /**
      * 执行更新单个数据，返回受影响的行数
      */
-    public int execUpdate(SQLiteDatabase db) throws IOException {
+    public int execUpdate(SQLiteDatabase db) throws IOException, IllegalAccessException {
         return execUpdateWithMapping(db, null, null);
     }
 
     /**
      * 执行更新单个数据，返回受影响的行数
+     * 未设置参数(bindArgs)时，直接从实体按属性类型绑定全部列的值。
      */
-    public int execUpdateWithMapping(SQLiteDatabase db, Object entity, TableManager tableManager) throws IOException {
+    public int execUpdateWithMapping(SQLiteDatabase db, Object entity, TableManager tableManager)
+            throws IOException, IllegalAccessException {
         printSQL();
-        mStatement = db.compileStatement(sql);
+        mStatement = compileStatement(db);
         if (!Checker.isEmpty(bindArgs)) {
             for (int i = 0; i < bindArgs.length; i++) {
                 bind(i + 1, bindArgs[i]);
             }
+        } else if (entity != null) {
+            EntityBinder.of(TableManager.getTable(entity)).bindUpdate(mStatement, entity);
         }
         int rows = NONE;
         if (Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB) {
@@ -244,18 +295,21 @@ public class SQLStatement implements Serializable {
             Log.d(TAG, "----> BeginTransaction[update col]");
         }
         try {
-            mStatement = db.compileStatement(sql);
+            mStatement = compileStatement(db);
             Iterator<?> it = list.iterator();
             boolean mapTableCheck = true;
-            EntityTable table = null;
+            EntityBinder binder = null;
             while (it.hasNext()) {
                 mStatement.clearBindings();
                 Object obj = it.next();
-                if (table == null) {
-                    table = TableManager.getTable(obj);
-                }
-                bindArgs = SQLBuilder.buildUpdateSqlArgsOnly(obj, cvs);
-                if (!Checker.isEmpty(bindArgs)) {
+                if (cvs == null || !cvs.checkColumns()) {
+                    // 更新全部列，直接从实体绑定值
+                    if (binder == null) {
+                        binder = EntityBinder.of(TableManager.getTable(obj));
+                    }
+                    binder.bindUpdate(mStatement, obj);
+                } else {
+                    bindArgs = SQLBuilder.buildUpdateSqlArgsOnly(obj, cvs);
                     for (int i = 0; i < bindArgs.length; i++) {
                         bind(i + 1, bindArgs[i]);
                     }
@@ -300,7 +354,7 @@ public class SQLStatement implements Serializable {
     public int execDeleteWithMapping(final SQLiteDatabase db, Object entity, TableManager tableManager)
             throws IOException {
         printSQL();
-        mStatement = db.compileStatement(sql);
+        mStatement = compileStatement(db);
         if (bindArgs != null) {
             for (int i = 0; i < bindArgs.length; i++) {
                 bind(i + 1, bindArgs[i]);
@@ -340,7 +394,7 @@ public class SQLStatement implements Serializable {
             final TableManager tableManager) throws IOException {
         printSQL();
         // 删除全部数据
-        mStatement = db.compileStatement(sql);
+        mStatement = compileStatement(db);
         if (bindArgs != null) {
             for (int i = 0; i < bindArgs.length; i++) {
                 bind(i + 1, bindArgs[i]);
@@ -384,7 +438,7 @@ public class SQLStatement implements Serializable {
     public boolean execute(SQLiteDatabase db) {
         printSQL();
         try {
-            mStatement = db.compileStatement(sql);
+            mStatement = compileStatement(db);
             if (bindArgs != null) {
                 for (int i = 0; i < bindArgs.length; i++) {
                     bind(i + 1, bindArgs[i]);
@@ -408,7 +462,7 @@ public class SQLStatement implements Serializable {
         printSQL();
         long count = 0;
         try {
-            mStatement = db.compileStatement(sql);
+            mStatement = compileStatement(db);
             if (bindArgs != null) {
                 for (int i = 0; i < bindArgs.length; i++) {
                     bind(i + 1, bindArgs[i]);
@@ -436,10 +490,16 @@ public class SQLStatement implements Serializable {
         try {
             final EntityTable table = TableManager.getTable(claxx, false);
             Querier.doQuery(db, this, new Querier.CursorParser() {
+                EntityMapper mapper;
+
                 @Override
                 public void parseEachCursor(SQLiteDatabase db, Cursor c) throws Exception {
-                    T t = ClassUtil.newInstance(claxx);
-                    DataUtil.injectDataToObject(c, t, table);
+                    if (mapper == null) {
+                        mapper = EntityMapper.of(table, c);
+                    }
+                    @SuppressWarnings("unchecked")
+                    T t = (T) mapper.newInstance();
+                    mapper.inject(c, t);
                     list.add(t);
                 }
             });
@@ -460,9 +520,11 @@ public class SQLStatement implements Serializable {
             T t;
 
             @Override
+            @SuppressWarnings("unchecked")
             public void parseEachCursor(SQLiteDatabase db, Cursor c) throws Exception {
-                t = ClassUtil.newInstance(claxx);
-                DataUtil.injectDataToObject(c, t, table);
+                EntityMapper mapper = EntityMapper.of(table, c);
+                t = (T) mapper.newInstance();
+                mapper.inject(c, t);
                 stopParse();
             }
 
@@ -474,6 +536,138 @@ public class SQLStatement implements Serializable {
         return t;
     }
 
+    /**
+     * 执行查询，所有行注入同一个实体对象后交给 visitor，不为每行创建对象
+     */
+    public <T> void scan(SQLiteDatabase db, final Class<T> claxx, final RowVisitor<T> visitor) {
+        printSQL();
+        final EntityTable table = TableManager.getTable(claxx, false);
+        Querier.doQuery(db, this, new Querier.CursorParser() {
+            EntityMapper mapper;
+            T t;
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public void parseEachCursor(SQLiteDatabase db, Cursor c) throws Exception {
+                if (mapper == null) {
+                    mapper = EntityMapper.of(table, c);
+                    t = (T) mapper.newInstance();
+                }
+                mapper.inject(c, t);
+                visitor.visit(t);
+                if (visitor.isStopped()) {
+                    stopParse();
+                }
+            }
+        });
+    }
+
+    /**
+     * 执行查询，按列读入 result，查询的列顺序须与 {@link ColumnarResult#getColumns()} 一致
+     */
+    public ColumnarResult queryColumnar(SQLiteDatabase db, final ColumnarResult result) {
+        printSQL();
+        Querier.doQuery(db, this, new Querier.CursorParser() {
+            @Override
+            public void parseEachCursor(SQLiteDatabase db, Cursor c) throws Exception {
+                if (result.size() == 0) {
+                    result.allocate(c.getCount());
+                }
+                result.append(c);
+            }
+        });
+        result.trim();
+        return result;
+    }
+
+    /**
+     * 执行单列查询，直接从 Cursor 读取第一列到 long 数组，不创建实体对象，NULL 读为0
+     */
+    public long[] queryLongColumn(SQLiteDatabase db) {
+        printSQL();
+        long[] result = Querier.doQuery(db, this, new Querier.CursorParser<long[]>() {
+            long[] arr;
+            int size;
+
+            @Override
+            public void parseEachCursor(SQLiteDatabase db, Cursor c) throws Exception {
+                if (arr == null) {
+                    arr = new long[initialCapacity(c)];
+                } else if (size == arr.length) {
+                    arr = Arrays.copyOf(arr, size << 1);
+                }
+                arr[size++] = c.getLong(0);
+            }
+
+            @Override
+            public long[] returnResult() {
+                return arr == null ? new long[0] : size == arr.length ? arr : Arrays.copyOf(arr, size);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 执行单列查询，直接从 Cursor 读取第一列到 double 数组，不创建实体对象，NULL 读为0
+     */
+    public double[] queryDoubleColumn(SQLiteDatabase db) {
+        printSQL();
+        double[] result = Querier.doQuery(db, this, new Querier.CursorParser<double[]>() {
+            double[] arr;
+            int size;
+
+            @Override
+            public void parseEachCursor(SQLiteDatabase db, Cursor c) throws Exception {
+                if (arr == null) {
+                    arr = new double[initialCapacity(c)];
+                } else if (size == arr.length) {
+                    arr = Arrays.copyOf(arr, size << 1);
+                }
+                arr[size++] = c.getDouble(0);
+            }
+
+            @Override
+            public double[] returnResult() {
+                return arr == null ? new double[0] : size == arr.length ? arr : Arrays.copyOf(arr, size);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 执行单列查询，直接从 Cursor 读取第一列到 String 数组，不创建实体对象
+     */
+    public String[] queryStringColumn(SQLiteDatabase db) {
+        printSQL();
+        String[] result = Querier.doQuery(db, this, new Querier.CursorParser<String[]>() {
+            String[] arr;
+            int size;
+
+            @Override
+            public void parseEachCursor(SQLiteDatabase db, Cursor c) throws Exception {
+                if (arr == null) {
+                    arr = new String[initialCapacity(c)];
+                } else if (size == arr.length) {
+                    arr = Arrays.copyOf(arr, size << 1);
+                }
+                arr[size++] = c.getString(0);
+            }
+
+            @Override
+            public String[] returnResult() {
+                return arr == null ? new String[0] : size == arr.length ? arr : Arrays.copyOf(arr, size);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 遍历前 Cursor 已统计过行数，按行数分配避免扩容
+     */
+    private static int initialCapacity(Cursor c) {
+        int count = c.getCount();
+        return count > 0 ? count : 16;
+    }
 
     @Override
     public String toString() {
@@ -498,7 +692,11 @@ public class SQLStatement implements Serializable {
                 public Boolean doTransaction(SQLiteDatabase db) throws Exception {
                     if (insertNew && tableCheck) {
                         for (MapInfo.MapTable table : mapTable.tableList) {
-                            tableManager.checkOrCreateMappingTable(db, table.name, table.column1, table.column2);
+                            if (table.table1 != null) {
+                                tableManager.checkOrCreateMappingTable(db, table.table1, table.table2);
+                            } else {
+                                tableManager.checkOrCreateMappingTable(db, table.name, table.column1, table.column2);
+                            }
                         }
                     }
                     if (mapTable.delOldRelationSQL != null) {
@@ -509,6 +707,16 @@ public class SQLStatement implements Serializable {
                             }
                         }
                     }
+                    if (insertNew && mapTable.syncRelationList != null) {
+                        RelationBatch batch = new RelationBatch();
+                        for (MapInfo.MapRelation r : mapTable.syncRelationList) {
+                            batch.sync(r.table1, r.table2, r.key1, r.key2s);
+                        }
+                        int rows = batch.flush(db, null);
+                        if (Log.isPrint) {
+                            Log.v(TAG, "Exec sync mapping success, nums: " + rows);
+                        }
+                    }
                     if (insertNew && mapTable.mapNewRelationSQL != null) {
                         for (SQLStatement st : mapTable.mapNewRelationSQL) {
                             long rowId = st.execInsert(db);
@@ -520,6 +728,9 @@ public class SQLStatement implements Serializable {
                     return true;
                 }
             });
+            if (tableManager != null) {
+                tableManager.upgradePendingMappingTables(db);
+            }
         }
     }
 
@@ -529,13 +740,29 @@ public class SQLStatement implements Serializable {
         }
     }
 
+    /**
+     * 编译sql语句，数据库连接有语句缓存时优先从缓存中获取。
+     */
+    private SQLiteStatement compileStatement(SQLiteDatabase db) {
+        mCache = StatementCache.of(db);
+        if (mCache != null) {
+            return mCache.acquire(sql);
+        }
+        return db.compileStatement(sql);
+    }
+
     private void realease() {
         if (mStatement != null) {
-            mStatement.close();
+            if (mCache != null) {
+                mCache.release(sql, mStatement);
+            } else {
+                mStatement.close();
+            }
         }
         //sql = null;
         bindArgs = null;
         mStatement = null;
+        mCache = null;
     }
 
 
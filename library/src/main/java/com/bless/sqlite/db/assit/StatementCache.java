@@ -0,0 +1,165 @@
+package com.bless.sqlite.db.assit;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.bless.sqlite.log.Log;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 已编译sql语句(SQLiteStatement)缓存
+ * <p>
+ * 每个数据库连接对应一个，以sql文本为key，LRU淘汰。
+ * 语句取出后由调用者独占，用完再放回缓存，所以多线程下不会出现同一语句被同时绑定值的情况。
+ * 仅缓存 SELECT / INSERT / REPLACE / UPDATE / DELETE 语句，建表、删表等语句每次重新编译。
+ */
+public class StatementCache {
+    private static final String TAG = StatementCache.class.getSimpleName();
+    public static final int DEFAULT_MAX_SIZE = 32;
+
+    /**
+     * 数据库连接与缓存的对应关系。
+     * 缓存持有数据库连接，弱引用的key不会被回收，所以用普通map，由 {@link #unregister()} 显式解除。
+     */
+    private static final HashMap<SQLiteDatabase, StatementCache> mCacheMap =
+            new HashMap<SQLiteDatabase, StatementCache>();
+
+    private final SQLiteDatabase db;
+    private final int maxSize;
+    private final LinkedHashMap<String, SQLiteStatement> mStatementMap;
+
+    public StatementCache(SQLiteDatabase db, int maxSize) {
+        this.db = db;
+        this.maxSize = maxSize > 0 ? maxSize : DEFAULT_MAX_SIZE;
+        this.mStatementMap = new LinkedHashMap<String, SQLiteStatement>(this.maxSize, 0.75f, true);
+    }
+
+    /**
+     * 将缓存绑定到数据库连接上，{@link SQLStatement} 执行时据此找到缓存。
+     * 关闭数据库前需调用 {@link #unregister()}，否则数据库连接与已编译的语句不会被释放。
+     */
+    public static StatementCache register(SQLiteDatabase db, int maxSize) {
+        StatementCache cache = new StatementCache(db, maxSize);
+        synchronized (mCacheMap) {
+            StatementCache old = mCacheMap.put(db, cache);
+            if (old != null) {
+                old.evictAll();
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * 获取数据库连接对应的缓存，没有则返回null。
+     */
+    public static StatementCache of(SQLiteDatabase db) {
+        if (db == null) {
+            return null;
+        }
+        synchronized (mCacheMap) {
+            return mCacheMap.get(db);
+        }
+    }
+
+    /**
+     * 取出已编译的语句，缓存中没有则新编译一个。
+     * 取出的语句需通过 {@link #release(String, SQLiteStatement)} 放回。
+     */
+    public SQLiteStatement acquire(String sql) {
+        SQLiteStatement stmt;
+        synchronized (this) {
+            stmt = mStatementMap.remove(sql);
+        }
+        if (stmt != null) {
+            stmt.clearBindings();
+            return stmt;
+        }
+        return db.compileStatement(sql);
+    }
+
+    /**
+     * 放回语句，不可缓存的或被淘汰的语句将被关闭。
+     */
+    public void release(String sql, SQLiteStatement stmt) {
+        if (stmt == null) {
+            return;
+        }
+        if (!isCacheable(sql)) {
+            stmt.close();
+            return;
+        }
+        stmt.clearBindings();
+        SQLiteStatement old;
+        synchronized (this) {
+            old = mStatementMap.put(sql, stmt);
+            trimToSize();
+        }
+        if (old != null && old != stmt) {
+            old.close();
+        }
+    }
+
+    /**
+     * 清空缓存并关闭全部语句
+     */
+    public synchronized void evictAll() {
+        for (SQLiteStatement stmt : mStatementMap.values()) {
+            stmt.close();
+        }
+        mStatementMap.clear();
+    }
+
+    /**
+     * 清空缓存，并解除和数据库连接的绑定
+     */
+    public void unregister() {
+        synchronized (mCacheMap) {
+            if (mCacheMap.get(db) == this) {
+                mCacheMap.remove(db);
+            }
+        }
+        evictAll();
+    }
+
+    public synchronized int size() {
+        return mStatementMap.size();
+    }
+
+    public SQLiteDatabase getDatabase() {
+        return db;
+    }
+
+    /**
+     * 是否为可缓存的语句
+     */
+    public static boolean isCacheable(String sql) {
+        if (sql == null) {
+            return false;
+        }
+        int i = 0, len = sql.length();
+        while (i < len && Character.isWhitespace(sql.charAt(i))) {
+            i++;
+        }
+        return sql.regionMatches(true, i, "SELECT", 0, 6)
+               || sql.regionMatches(true, i, "INSERT", 0, 6)
+               || sql.regionMatches(true, i, "REPLACE", 0, 7)
+               || sql.regionMatches(true, i, "UPDATE", 0, 6)
+               || sql.regionMatches(true, i, "DELETE", 0, 6);
+    }
+
+    private void trimToSize() {
+        Iterator<Map.Entry<String, SQLiteStatement>> it = mStatementMap.entrySet().iterator();
+        while (mStatementMap.size() > maxSize && it.hasNext()) {
+            Map.Entry<String, SQLiteStatement> eldest = it.next();
+            it.remove();
+            eldest.getValue().close();
+            if (Log.isPrint) {
+                Log.v(TAG, "Statement evicted: " + eldest.getKey());
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.bless.sqlite.db.assit;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteCursorDriver;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQuery;
+import android.os.Build;
+
+import java.io.IOException;
+
+/**
+ * 按参数原本的类型绑定查询参数
+ * <p>
+ * {@link SQLiteDatabase#rawQuery(String, String[])} 只能绑定字符串，数值比较要依赖类型亲和转换。
+ * 这里在创建 Cursor 时，将 long、double、byte[]、null 等参数以原生类型绑定到 {@link SQLiteQuery}，
+ * 绑定规则与 {@link SQLStatement#bind(android.database.sqlite.SQLiteProgram, int, Object)} 一致。
+ */
+public class TypedCursorFactory implements SQLiteDatabase.CursorFactory {
+
+    private final Object[] bindArgs;
+
+    public TypedCursorFactory(Object[] bindArgs) {
+        this.bindArgs = bindArgs;
+    }
+
+    /**
+     * 执行查询，参数按原生类型绑定
+     */
+    public static Cursor rawQuery(SQLiteDatabase db, String sql, Object[] bindArgs) {
+        if (Checker.isEmpty(bindArgs) || bindArgs instanceof String[]) {
+            return db.rawQuery(sql, (String[]) bindArgs);
+        }
+        return db.rawQueryWithFactory(new TypedCursorFactory(bindArgs), sql, null, null);
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public Cursor newCursor(SQLiteDatabase db, SQLiteCursorDriver masterQuery, String editTable, SQLiteQuery query) {
+        if (bindArgs != null) {
+            try {
+                for (int i = 0; i < bindArgs.length; i++) {
+                    SQLStatement.bind(query, i + 1, bindArgs[i]);
+                }
+            } catch (IOException e) {
+                throw new IllegalArgumentException("can not bind query args", e);
+            }
+        }
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB) {
+            return new SQLiteCursor(db, masterQuery, editTable, query);
+        }
+        return new SQLiteCursor(masterQuery, editTable, query);
+    }
+}
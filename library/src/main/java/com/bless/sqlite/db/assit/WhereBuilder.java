@@ -209,6 +209,10 @@ public class WhereBuilder {
         return this;
     }
 
+    /**
+     * 将参数全部转为字符串。
+     * 查询和删除时参数已按原生类型绑定(见 {@link TypedCursorFactory})，不再需要转换。
+     */
     public String[] transToStringArray() {
         if (whereArgs != null && whereArgs.length > 0) {
             if (whereArgs instanceof String[]) {
@@ -235,7 +239,7 @@ public class WhereBuilder {
     public SQLStatement createStatementDelete() {
         SQLStatement stmt = new SQLStatement();
         stmt.sql = DELETE + TableManager.getTableName(tableClass) + createWhereString();
-        stmt.bindArgs = transToStringArray();
+        stmt.bindArgs = whereArgs;
         return stmt;
     }
 
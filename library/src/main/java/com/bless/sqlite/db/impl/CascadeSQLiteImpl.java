@@ -3,24 +3,32 @@ package com.bless.sqlite.db.impl;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 
+import com.bless.sqlite.db.assit.CascadeContext;
 import com.bless.sqlite.db.assit.Checker;
+import com.bless.sqlite.db.assit.CollSpliter;
+import com.bless.sqlite.db.assit.EntityIterator;
+import com.bless.sqlite.db.assit.FetchPlan;
+import com.bless.sqlite.db.assit.EntityMapper;
 import com.bless.sqlite.db.assit.Transaction;
 import com.bless.sqlite.db.model.EntityTable;
+import com.bless.sqlite.db.model.LazyList;
+import com.bless.sqlite.db.model.LazyToOne;
+import com.bless.sqlite.db.model.Page;
 import com.bless.sqlite.db.model.MapProperty;
 import com.bless.sqlite.SQLite;
 import com.bless.sqlite.db.DataBaseConfig;
 import com.bless.sqlite.db.TableManager;
 import com.bless.sqlite.db.assit.Querier;
+import com.bless.sqlite.db.assit.PreparedQuery;
 import com.bless.sqlite.db.assit.QueryBuilder;
+import com.bless.sqlite.db.assit.RelationBatch;
 import com.bless.sqlite.db.assit.SQLBuilder;
 import com.bless.sqlite.db.assit.SQLStatement;
 import com.bless.sqlite.db.assit.WhereBuilder;
 import com.bless.sqlite.db.model.ColumnsValue;
 import com.bless.sqlite.db.model.ConflictAlgorithm;
 import com.bless.sqlite.db.model.Property;
-import com.bless.sqlite.db.model.RelationKey;
 import com.bless.sqlite.db.utils.ClassUtil;
-import com.bless.sqlite.db.utils.DataUtil;
 import com.bless.sqlite.db.utils.FieldUtil;
 
 import java.io.IOException;
@@ -28,9 +36,14 @@ import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 数据SQLite操作关联实现
@@ -74,10 +87,14 @@ final class CascadeSQLiteImpl extends SQLite {
             Long rowID = Transaction.execute(db, new Transaction.Worker<Long>() {
                 @Override
                 public Long doTransaction(SQLiteDatabase db) throws Exception {
-                    HashMap<String, Integer> handleMap = new HashMap<String, Integer>();
-                    return checkTableAndSaveRecursive(entity, db, handleMap);
+                    CascadeContext context = new CascadeContext();
+                    RelationBatch batch = new RelationBatch();
+                    long rowID = checkTableAndSaveRecursive(entity, db, context, batch);
+                    batch.flush(db, mTableManager);
+                    return rowID;
                 }
             });
+            mTableManager.upgradePendingMappingTables(db);
             return rowID == null ? SQLStatement.NONE : rowID;
         } finally {
             releaseReference();
@@ -108,10 +125,14 @@ final class CascadeSQLiteImpl extends SQLite {
                 @Override
                 public Long doTransaction(SQLiteDatabase db) throws Exception {
                     mTableManager.checkOrCreateTable(db, entity);
-                    return insertRecursive(SQLBuilder.buildInsertSql(entity, conflictAlgorithm),
-                            entity, db, new HashMap<String, Integer>());
+                    RelationBatch batch = new RelationBatch();
+                    long rowID = insertRecursive(SQLBuilder.buildInsertSql(entity, conflictAlgorithm),
+                            entity, db, new CascadeContext(), batch);
+                    batch.flush(db, mTableManager);
+                    return rowID;
                 }
             });
+            mTableManager.upgradePendingMappingTables(db);
             return rowID == null ? SQLStatement.NONE : rowID;
         } catch (Exception e) {
             e.printStackTrace();
@@ -157,12 +178,16 @@ final class CascadeSQLiteImpl extends SQLite {
             Integer rowID = Transaction.execute(db, new Transaction.Worker<Integer>() {
                 @Override
                 public Integer doTransaction(SQLiteDatabase db) throws Exception {
-                    HashMap<String, Integer> handleMap = new HashMap<String, Integer>();
+                    CascadeContext context = new CascadeContext();
                     SQLStatement stmt = SQLBuilder.buildUpdateSql(entity, cvs, conflictAlgorithm);
                     mTableManager.checkOrCreateTable(db, entity);
-                    return updateRecursive(stmt, entity, db, handleMap);
+                    RelationBatch batch = new RelationBatch();
+                    int rowID = updateRecursive(stmt, entity, db, context, batch);
+                    batch.flush(db, mTableManager);
+                    return rowID;
                 }
             });
+            mTableManager.upgradePendingMappingTables(db);
             return rowID == null ? SQLStatement.NONE : rowID;
         } catch (Exception e) {
             e.printStackTrace();
@@ -206,10 +231,14 @@ final class CascadeSQLiteImpl extends SQLite {
             Integer rowID = Transaction.execute(db, new Transaction.Worker<Integer>() {
                 @Override
                 public Integer doTransaction(SQLiteDatabase db) throws Exception {
-                    HashMap<String, Integer> handleMap = new HashMap<String, Integer>();
-                    return checkTableAndDeleteRecursive(entity, db, handleMap);
+                    CascadeContext context = new CascadeContext();
+                    RelationBatch batch = new RelationBatch();
+                    int rowID = checkTableAndDeleteRecursive(entity, db, context, batch);
+                    batch.flush(db, mTableManager);
+                    return rowID;
                 }
             });
+            mTableManager.upgradePendingMappingTables(db);
             if (rowID != null) {
                 return rowID;
             }
@@ -315,24 +344,64 @@ final class CascadeSQLiteImpl extends SQLite {
 
     @Override
     public <T> ArrayList<T> query(Class<T> claxx) {
-        return checkTableAndQuery(claxx, new QueryBuilder<T>(claxx));
+        return checkTableAndQuery(claxx, new QueryBuilder<T>(claxx).createStatement(), null, FetchPlan.ALL);
     }
 
     @Override
     public <T> ArrayList<T> query(QueryBuilder<T> qb) {
-        return checkTableAndQuery(qb.getQueryClass(), qb);
+        return checkTableAndQuery(qb.getQueryClass(), qb.createStatement(), null, qb.getFetchPlan());
+    }
+
+    @Override
+    public <T> ArrayList<T> query(PreparedQuery<T> pq, Object... args) {
+        return checkTableAndQuery(pq.getQueryClass(), pq.createStatement(args), pq, pq.getFetchPlan());
+    }
+
+    /**
+     * 逐行映射，每个实体的关联对象在读取该行时加载，关联缓存不跨行保留
+     */
+    @Override
+    public <T> EntityIterator<T> iterate(QueryBuilder<T> qb) {
+        Class<T> claxx = qb.getQueryClass();
+        EntityTable table = TableManager.getTable(claxx, false);
+        if (!mTableManager.isSQLTableCreated(table.name)) {
+            return EntityIterator.empty(claxx);
+        }
+        SQLStatement stmt = qb.createStatement();
+        final FetchPlan plan = qb.getFetchPlan();
+        acquireReference();
+        SQLiteDatabase db = mHelper.getReadableDatabase();
+        Cursor cursor = EntityIterator.openCursor(db, stmt, this);
+        return new EntityIterator<T>(db, cursor, claxx, this) {
+            @Override
+            protected void onEntity(SQLiteDatabase db, T entity) throws Exception {
+                queryForMappingBatch(Collections.singletonList(entity), plan.getRoot(), db, new CascadeContext());
+            }
+        };
+    }
+
+    @Override
+    public <T> Page<T> queryPage(QueryBuilder<T> qb) {
+        return qb.toPage(query(qb));
     }
 
     @Override
     public <T> T queryById(long id, Class<T> claxx) {
-        return queryById(String.valueOf(id), claxx);
+        return queryByKey(id, claxx);
     }
 
     @Override
     public <T> T queryById(String id, Class<T> claxx) {
+        return queryByKey(id, claxx);
+    }
+
+    /**
+     * 根据主键查询，主键值按原生类型绑定
+     */
+    private <T> T queryByKey(Object id, Class<T> claxx) {
         EntityTable table = TableManager.getTable(claxx);
         ArrayList<T> list = checkTableAndQuery(claxx, new QueryBuilder<T>(claxx)
-                .whereEquals(table.key.column, String.valueOf(id)));
+                .whereEquals(table.key.column, id).createStatement(), null, FetchPlan.ALL);
         if (!Checker.isEmpty(list)) {
             return list.get(0);
         }
@@ -349,28 +418,33 @@ final class CascadeSQLiteImpl extends SQLite {
      * 3. 如果是多对一，根据map查找key2的关联对象，赋给obj1
      * 4. 如果是一对多，根据map查找key2的关联对象，反射实例化obj1的容器，关联对象放入。
      * 5. 并对关联对象递归此过程
+     * 只加载 plan 中的关联
      */
-    private <T> ArrayList<T> checkTableAndQuery(final Class<T> claxx, QueryBuilder builder) {
+    private <T> ArrayList<T> checkTableAndQuery(final Class<T> claxx, SQLStatement stmt,
+            final PreparedQuery<T> prepared, FetchPlan plan) {
         acquireReference();
         final ArrayList<T> list = new ArrayList<T>();
         try {
             final EntityTable table = TableManager.getTable(claxx, false);
             if (mTableManager.isSQLTableCreated(table.name)) {
-                final HashMap<String, Object> entityMap = new HashMap<String, Object>();
-                final HashMap<String, Integer> queryMap = new HashMap<String, Integer>();
+                final CascadeContext context = new CascadeContext();
                 SQLiteDatabase db = mHelper.getReadableDatabase();
-                Querier.doQuery(db, builder.createStatement(), new Querier.CursorParser() {
+                Querier.doQuery(db, stmt, new Querier.CursorParser() {
+                    EntityMapper mapper;
+
                     @Override
                     public void parseEachCursor(SQLiteDatabase db, Cursor c) throws Exception {
-                        T t = ClassUtil.newInstance(claxx);
-                        DataUtil.injectDataToObject(c, t, table);
+                        if (mapper == null) {
+                            mapper = prepared != null ? prepared.getMapper(c) : EntityMapper.of(table, c);
+                        }
+                        @SuppressWarnings("unchecked")
+                        T t = (T) mapper.newInstance();
+                        mapper.inject(c, t);
                         list.add(t);
-                        entityMap.put(table.name + FieldUtil.get(table.key.field, t), t);
+                        context.putEntity(table, t);
                     }
                 });
-                for (T t : list) {
-                    queryForMappingRecursive(t, db, queryMap, entityMap);
-                }
+                queryForMappingBatch(list, plan.getRoot(), db, context);
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -381,73 +455,74 @@ final class CascadeSQLiteImpl extends SQLite {
     }
 
     /**
-     * 循环遍历查找当前实体的关联实体
+     * 逐层批量加载关联实体：
+     * 1. 同一层的实体按表分组，每个关联属性用 IN 分批查出全部关系 map:<key1, key2>
+     * 2. 缓存中没有的关联实体同样用 IN 分批查出，N对一关联与第1步合并为一次联表查询
+     * 3. 在内存中赋给各个实体，新赋值的关联实体作为下一层继续
+     * 每层每个关联属性的查询次数与实体数量无关(每{@link SQLStatement#IN_TOP_LIMIT}个一批)。
+     * 同一层的实体还按加载计划的节点分组，只加载节点包含的关联。
      */
-    private void queryForMappingRecursive(Object obj1, SQLiteDatabase db, HashMap<String, Integer> queryMap,
-            HashMap<String, Object> entityMap)
-            throws IllegalAccessException, InstantiationException {
-        final EntityTable table1 = TableManager.getTable(obj1);
-        Object key1 = FieldUtil.getAssignedKeyObject(table1.key, obj1);
-        String key = table1.name + key1;
-        if (queryMap.get(key) == null) {
-            queryMap.put(key, 1);
-            if (table1.mappingList != null) {
-                for (MapProperty mp : table1.mappingList) {
-                    if (mp.isToOne()) {
-                        queryMapToOne(table1, key1, obj1, mp.field, db, queryMap, entityMap);
-                    } else if (mp.isToMany()) {
-                        queryMapToMany(table1, key1, obj1, mp.field, db, queryMap, entityMap);
-                    }
-                }
-            }
+    private void queryForMappingBatch(Collection<?> entities, FetchPlan.Node root, SQLiteDatabase db,
+            CascadeContext context) throws Exception {
+        LinkedHashMap<FetchPlan.Node, LinkedHashMap<EntityTable, ArrayList<Object>>> level
+                = new LinkedHashMap<FetchPlan.Node, LinkedHashMap<EntityTable, ArrayList<Object>>>();
+        for (Object obj : entities) {
+            addToLevel(level, root, TableManager.getTable(obj), obj);
         }
-    }
-
-    /**
-     * 查找N对一关系的实体
-     */
-    private void queryMapToOne(final EntityTable table1, Object key1, Object obj1,
-                               Field field, SQLiteDatabase db, HashMap<String, Integer> queryMap,
-                               HashMap<String, Object> entityMap)
-            throws IllegalAccessException, InstantiationException {
-        final EntityTable table2 = TableManager.getTable(field.getType());
-        if (mTableManager.isSQLMapTableCreated(table1.name, table2.name)) {
-            SQLStatement relationSql = SQLBuilder.buildQueryRelationSql(table1, table2, key1);
-            final RelationKey relation = new RelationKey();
-            Querier.doQuery(db, relationSql, new Querier.CursorParser() {
-                @Override
-                public void parseEachCursor(SQLiteDatabase db, Cursor c) throws Exception {
-                    relation.key1 = c.getString(c.getColumnIndex(table1.name));
-                    relation.key2 = c.getString(c.getColumnIndex(table2.name));
-                    stopParse();
-                }
-            });
-            if (relation.isOK()) {
-                String key = table2.name + relation.key2;
-                Object obj2 = entityMap.get(key);
-                if (obj2 == null) {
-                    SQLStatement entitySql = SQLBuilder.buildQueryMapEntitySql(table2, relation.key2);
-                    obj2 = entitySql.queryOneEntity(db, table2.claxx);
-                    entityMap.put(key, obj2);
-                }
-                if (obj2 != null) {
-                    FieldUtil.set(field, obj1, obj2);
-                    queryForMappingRecursive(obj2, db, queryMap, entityMap);
+        while (!level.isEmpty()) {
+            LinkedHashMap<FetchPlan.Node, LinkedHashMap<EntityTable, ArrayList<Object>>> next
+                    = new LinkedHashMap<FetchPlan.Node, LinkedHashMap<EntityTable, ArrayList<Object>>>();
+            for (Map.Entry<FetchPlan.Node, LinkedHashMap<EntityTable, ArrayList<Object>>> nodeEn : level.entrySet()) {
+                FetchPlan.Node node = nodeEn.getKey();
+                for (Map.Entry<EntityTable, ArrayList<Object>> en : nodeEn.getValue().entrySet()) {
+                    EntityTable table1 = en.getKey();
+                    if (table1.mappingList == null) {
+                        continue;
+                    }
+                    // key1 -> obj1，已按同一节点加载过关联的实体跳过
+                    LinkedHashMap<String, Object> objMap = new LinkedHashMap<String, Object>();
+                    for (Object obj1 : en.getValue()) {
+                        if (context.visit(obj1, node)) {
+                            objMap.put(String.valueOf(FieldUtil.getAssignedKeyObject(table1.key, obj1)), obj1);
+                        }
+                    }
+                    if (objMap.isEmpty()) {
+                        continue;
+                    }
+                    for (MapProperty mp : table1.mappingList) {
+                        if (mp.isToOne() || mp.isToMany()) {
+                            FetchPlan.Node child = node.child(mp);
+                            if (child != null) {
+                                queryMappingBatch(table1, objMap, mp, db, context, child, next);
+                            }
+                        }
+                    }
                 }
             }
+            level = next;
         }
     }
 
     /**
-     * 查找N对关系的实体
+     * 批量查找一个关联属性的关联实体，赋给 objMap 中的实体，关联实体加入下一层
      */
     @SuppressWarnings("unchecked")
-    private void queryMapToMany(final EntityTable table1, Object key1, Object obj1,
-                                Field field, SQLiteDatabase db, HashMap<String, Integer> queryMap,
-                                final HashMap<String, Object> entityMap)
-            throws IllegalAccessException, InstantiationException {
+    private void queryMappingBatch(final EntityTable table1, LinkedHashMap<String, Object> objMap, MapProperty mp,
+            final SQLiteDatabase db, final CascadeContext context, FetchPlan.Node node,
+            LinkedHashMap<FetchPlan.Node, LinkedHashMap<EntityTable, ArrayList<Object>>> next) throws Exception {
+        final Field field = mp.field;
+        final boolean toMany = mp.isToMany();
         final Class<?> class2;
-        if (Collection.class.isAssignableFrom(field.getType())) {
+        if (mp.lazy) {
+            if (toMany) {
+                setLazyLists(table1, objMap, field);
+            } else {
+                setLazyLoaders(table1, objMap, field);
+            }
+            return;
+        } else if (!toMany) {
+            class2 = field.getType();
+        } else if (Collection.class.isAssignableFrom(field.getType())) {
             class2 = FieldUtil.getGenericType(field);
         } else if (field.getType().isArray()) {
             class2 = FieldUtil.getComponentType(field);
@@ -456,66 +531,321 @@ final class CascadeSQLiteImpl extends SQLite {
                                        "you must use collection or array object");
         }
         final EntityTable table2 = TableManager.getTable(class2);
-        if (mTableManager.isSQLMapTableCreated(table1.name, table2.name)) {
-            SQLStatement relationSql = SQLBuilder.buildQueryRelationSql(table1, table2, key1);
-            final ArrayList<String> key2List = new ArrayList<String>();
-            Querier.doQuery(db, relationSql, new Querier.CursorParser() {
-                @Override
-                public void parseEachCursor(SQLiteDatabase db, Cursor c) throws Exception {
-                    key2List.add(c.getString(c.getColumnIndex(table2.name)));
-                }
-            });
-            if (!Checker.isEmpty(key2List)) {
-                final ArrayList<Object> allList2 = new ArrayList<Object>();
-                for (int i = key2List.size() - 1; i >= 0; i--) {
-                    Object obj2 = entityMap.get(table2.name + key2List.get(i));
-                    if (obj2 != null) {
-                        allList2.add(obj2);
-                        key2List.remove(i);
+        if (!mTableManager.isSQLMapTableCreated(table1.name, table2.name)) {
+            return;
+        }
+        if (!toMany) {
+            queryToOneBatch(table1, objMap, field, table2, db, context, node, next);
+            return;
+        }
+
+        // 1. 查询关系，关联主键按关联实体表的主键类型读取
+        final LinkedHashMap<String, ArrayList<Object>> relations = new LinkedHashMap<String, ArrayList<Object>>();
+        final LinkedHashSet<Object> key2Set = new LinkedHashSet<Object>();
+        CollSpliter.split(objMap.keySet(), SQLStatement.IN_TOP_LIMIT, new CollSpliter.Spliter<String>() {
+            @Override
+            public int oneSplit(ArrayList<String> list) throws Exception {
+                SQLStatement relationSql = SQLBuilder.buildQueryRelationSql(table1.claxx, class2, list);
+                Querier.doQuery(db, relationSql, new Querier.CursorParser() {
+                    int index1 = -1;
+                    int index2;
+
+                    @Override
+                    public void parseEachCursor(SQLiteDatabase db, Cursor c) throws Exception {
+                        if (index1 < 0) {
+                            index1 = c.getColumnIndex(table1.name);
+                            index2 = c.getColumnIndex(table2.name);
+                        }
+                        String key1 = c.getString(index1);
+                        Object key2 = context.readKey(table2, c, index2);
+                        if (key1 == null || key2 == null) {
+                            return;
+                        }
+                        ArrayList<Object> key2List = relations.get(key1);
+                        if (key2List == null) {
+                            key2List = new ArrayList<Object>(4);
+                            relations.put(key1, key2List);
+                        }
+                        key2List.add(key2);
+                        if (!context.containsEntity(table2, key2)) {
+                            key2Set.add(key2);
+                        }
                     }
-                }
-                //final Class<?> class2 = compClass;
-                int i = 0, start = 0, end;
-                while (start < key2List.size()) {
-                    int next = ++i * SQLStatement.IN_TOP_LIMIT;
-                    end = Math.min(key2List.size(), next);
-                    List<String> subList = key2List.subList(start, end);
-                    start = next;
+                });
+                return 0;
+            }
+        });
 
+        // 2. 一次查出缓存中没有的关联实体，查不到的也记下，避免重复查询
+        if (!key2Set.isEmpty()) {
+            CollSpliter.split(key2Set, SQLStatement.IN_TOP_LIMIT, new CollSpliter.Spliter<Object>() {
+                @Override
+                public int oneSplit(ArrayList<Object> list) throws Exception {
                     SQLStatement entitySql = QueryBuilder
                             .create(class2)
-                            .whereIn(table2.key.column, subList.toArray(new String[subList.size()]))
+                            .whereIn(table2.key.column, list.toArray())
                             .createStatement();
-
                     Querier.doQuery(db, entitySql, new Querier.CursorParser() {
+                        EntityMapper mapper;
+
                         @Override
                         public void parseEachCursor(SQLiteDatabase db, Cursor c) throws Exception {
-                            Object t = ClassUtil.newInstance(class2);
-                            DataUtil.injectDataToObject(c, t, table2);
-                            allList2.add(t);
-                            entityMap.put(table2.name + FieldUtil.get(table2.key.field, t), t);
+                            if (mapper == null) {
+                                mapper = EntityMapper.of(table2, c);
+                            }
+                            Object t = mapper.newInstance();
+                            mapper.inject(c, t);
+                            context.putEntity(table2, t);
                         }
                     });
+                    return 0;
                 }
-                if (!Checker.isEmpty(allList2)) {
-                    if (Collection.class.isAssignableFrom(field.getType())) {
-                        Collection coll = (Collection) ClassUtil.newCollectionForField(field);
-                        coll.addAll(allList2);
-                        FieldUtil.set(field, obj1, coll);
-                    } else if (field.getType().isArray()) {
-                        Object[] arrObj = (Object[]) ClassUtil.newArray(class2, allList2.size());
-                        arrObj = allList2.toArray(arrObj);
-                        FieldUtil.set(field, obj1, arrObj);
-                    } else {
-                        throw new RuntimeException("OneToMany and ManyToMany Relation, " +
-                                                   "you must use collection or array object");
+            });
+            for (Object key2 : key2Set) {
+                context.putMissing(table2, key2);
+            }
+        }
+
+        // 3. 在内存中赋值
+        for (Map.Entry<String, ArrayList<Object>> en : relations.entrySet()) {
+            Object obj1 = objMap.get(en.getKey());
+            if (obj1 == null) {
+                continue;
+            }
+            ArrayList<Object> allList2 = new ArrayList<Object>(en.getValue().size());
+            for (Object key2 : en.getValue()) {
+                Object obj2 = context.getEntity(table2, key2);
+                if (obj2 != null) {
+                    allList2.add(obj2);
+                }
+            }
+            if (!allList2.isEmpty()) {
+                if (Collection.class.isAssignableFrom(field.getType())) {
+                    Collection coll = (Collection) ClassUtil.newCollectionForField(field);
+                    coll.addAll(allList2);
+                    FieldUtil.set(field, obj1, coll);
+                } else {
+                    Object[] arrObj = (Object[]) ClassUtil.newArray(class2, allList2.size());
+                    arrObj = allList2.toArray(arrObj);
+                    FieldUtil.set(field, obj1, arrObj);
+                }
+                for (Object obj2 : allList2) {
+                    addToLevel(next, node, table2, obj2);
+                }
+            }
+        }
+    }
+
+    /**
+     * 批量查找N对一关联实体：关系表 LEFT JOIN 关联实体表，每批一次查询同时读出关系和关联实体，
+     * 每个实体只取第一条关系，关联实体加入下一层
+     */
+    private void queryToOneBatch(final EntityTable table1, final LinkedHashMap<String, Object> objMap,
+            final Field field, final EntityTable table2, final SQLiteDatabase db,
+            final CascadeContext context, final FetchPlan.Node node,
+            final LinkedHashMap<FetchPlan.Node, LinkedHashMap<EntityTable, ArrayList<Object>>> next)
+            throws Exception {
+        if (!mTableManager.isSQLTableCreated(table2.name)) {
+            return;
+        }
+        final HashSet<String> assigned = new HashSet<String>();
+        final boolean integerKey = context.isIntegerKey(table2);
+        CollSpliter.split(objMap.keySet(), SQLStatement.IN_TOP_LIMIT, new CollSpliter.Spliter<String>() {
+            @Override
+            public int oneSplit(ArrayList<String> list) throws Exception {
+                SQLStatement joinSql = SQLBuilder.buildQueryToOneJoinSql(table1, table2, list);
+                Querier.doQuery(db, joinSql, new Querier.CursorParser() {
+                    EntityMapper mapper;
+                    int index1;
+                    int index2;
+
+                    @Override
+                    public void parseEachCursor(SQLiteDatabase db, Cursor c) throws Exception {
+                        if (mapper == null) {
+                            mapper = EntityMapper.of(table2, c, SQLBuilder.JOIN_EXTRA_COLUMNS);
+                            index1 = c.getColumnIndex(SQLBuilder.JOIN_KEY1);
+                            index2 = c.getColumnIndex(table2.key.column);
+                        }
+                        String key1 = c.getString(index1);
+                        if (key1 == null || !assigned.add(key1)) {
+                            return;
+                        }
+                        // 关联实体已被删除时其列为NULL
+                        Object obj1 = objMap.get(key1);
+                        if (c.isNull(index2) || obj1 == null) {
+                            return;
+                        }
+                        Object obj2 = integerKey ? context.getEntity(table2, c.getLong(index2))
+                                                 : context.getEntity(table2, c.getString(index2));
+                        if (obj2 == null) {
+                            obj2 = mapper.newInstance();
+                            mapper.inject(c, obj2);
+                            context.putEntity(table2, obj2);
+                        }
+                        FieldUtil.set(field, obj1, obj2);
+                        addToLevel(next, node, table2, obj2);
                     }
-                    for (Object obj2 : allList2) {
-                        queryForMappingRecursive(obj2, db, queryMap, entityMap);
+                });
+                return 0;
+            }
+        });
+    }
+
+    /**
+     * 懒加载的N对一关联，只设置加载器，首次访问时查询
+     */
+    @SuppressWarnings("unchecked")
+    private void setLazyLoaders(final EntityTable table1, LinkedHashMap<String, Object> objMap, Field field)
+            throws IllegalAccessException {
+        final EntityTable table2 = TableManager.getTable(FieldUtil.getGenericType(field));
+        for (Map.Entry<String, Object> en : objMap.entrySet()) {
+            final String key1 = en.getKey();
+            LazyToOne<Object> lazy = (LazyToOne<Object>) FieldUtil.get(field, en.getValue());
+            if (lazy == null) {
+                lazy = new LazyToOne<Object>();
+                FieldUtil.set(field, en.getValue(), lazy);
+            }
+            lazy.setLoader(new LazyToOne.Loader<Object>() {
+                @Override
+                public Object load() {
+                    return loadToOne(table1, key1, table2);
+                }
+            });
+        }
+    }
+
+    /**
+     * 懒加载的N对多关联，注入按页读取的列表
+     */
+    private void setLazyLists(final EntityTable table1, LinkedHashMap<String, Object> objMap, Field field)
+            throws IllegalAccessException {
+        final EntityTable table2 = TableManager.getTable(FieldUtil.getGenericType(field));
+        for (Map.Entry<String, Object> en : objMap.entrySet()) {
+            final String key1 = en.getKey();
+            FieldUtil.set(field, en.getValue(), new LazyList<Object>(new LazyList.Loader<Object>() {
+                @Override
+                public int count() {
+                    return countToMany(table1, key1, table2);
+                }
+
+                @Override
+                public Page<Object> load(int offset, int limit, Object after) {
+                    return loadToManyPage(table1, key1, table2, after, offset, limit);
+                }
+            }));
+        }
+    }
+
+    private int countToMany(EntityTable table1, Object key1, EntityTable table2) {
+        acquireReference();
+        try {
+            SQLiteDatabase db = mHelper.getReadableDatabase();
+            if (mTableManager.isSQLMapTableCreated(table1.name, table2.name)) {
+                return (int) SQLBuilder.buildCountRelationSql(table1, table2, key1).queryForLong(db);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            releaseReference();
+        }
+        return 0;
+    }
+
+    /**
+     * 读取一页N对多关联实体(及其非懒加载关联)，顺序与关系一致，实体不存在的位置为null
+     */
+    @SuppressWarnings("unchecked")
+    private Page<Object> loadToManyPage(EntityTable table1, Object key1, final EntityTable table2, Object after,
+            int offset, int limit) {
+        final ArrayList<String> key2List = new ArrayList<String>();
+        ArrayList<Object> list = new ArrayList<Object>();
+        acquireReference();
+        try {
+            SQLiteDatabase db = mHelper.getReadableDatabase();
+            if (mTableManager.isSQLMapTableCreated(table1.name, table2.name)) {
+                SQLStatement relationSql = SQLBuilder.buildQueryRelationPageSql(table1, table2, key1, after,
+                        offset, limit);
+                Querier.doQuery(db, relationSql, new Querier.CursorParser() {
+                    @Override
+                    public void parseEachCursor(SQLiteDatabase db, Cursor c) throws Exception {
+                        key2List.add(c.getString(0));
+                    }
+                });
+                if (!key2List.isEmpty()) {
+                    ArrayList<Object> entities = checkTableAndQuery((Class<Object>) table2.claxx, QueryBuilder
+                            .create(table2.claxx)
+                            .whereIn(table2.key.column, key2List.toArray(new String[key2List.size()]))
+                            .createStatement(), null, FetchPlan.ALL);
+                    HashMap<String, Object> entityMap = new HashMap<String, Object>();
+                    for (Object obj2 : entities) {
+                        entityMap.put(String.valueOf(FieldUtil.get(table2.key.field, obj2)), obj2);
                     }
+                    for (String key2 : key2List) {
+                        list.add(entityMap.get(key2));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            releaseReference();
+        }
+        Object[] nextKey = key2List.isEmpty() ? null : new Object[]{key2List.get(key2List.size() - 1)};
+        return new Page<Object>(list, nextKey);
+    }
+
+    /**
+     * 加载懒加载的N对一关联实体，关系与实体联表一次查出，再加载关联实体的非懒加载关联
+     */
+    private Object loadToOne(final EntityTable table1, Object key1, final EntityTable table2) {
+        acquireReference();
+        try {
+            SQLiteDatabase db = mHelper.getReadableDatabase();
+            if (mTableManager.isSQLMapTableCreated(table1.name, table2.name)
+                && mTableManager.isSQLTableCreated(table2.name)) {
+                SQLStatement joinSql = SQLBuilder.buildQueryToOneJoinSql(table1, table2,
+                        Collections.singletonList(String.valueOf(key1)));
+                final Object[] result = new Object[1];
+                Querier.doQuery(db, joinSql, new Querier.CursorParser() {
+                    @Override
+                    public void parseEachCursor(SQLiteDatabase db, Cursor c) throws Exception {
+                        if (!c.isNull(c.getColumnIndex(table2.key.column))) {
+                            EntityMapper mapper = EntityMapper.of(table2, c, SQLBuilder.JOIN_EXTRA_COLUMNS);
+                            result[0] = mapper.newInstance();
+                            mapper.inject(c, result[0]);
+                        }
+                        stopParse();
+                    }
+                });
+                Object obj2 = result[0];
+                if (obj2 != null) {
+                    CascadeContext context = new CascadeContext();
+                    context.putEntity(table2, obj2);
+                    queryForMappingBatch(Collections.singletonList(obj2), FetchPlan.ALL.getRoot(), db, context);
                 }
+                return obj2;
             }
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            releaseReference();
         }
+        return null;
+    }
+
+    private static void addToLevel(LinkedHashMap<FetchPlan.Node, LinkedHashMap<EntityTable, ArrayList<Object>>> level,
+            FetchPlan.Node node, EntityTable table, Object obj) {
+        LinkedHashMap<EntityTable, ArrayList<Object>> tables = level.get(node);
+        if (tables == null) {
+            tables = new LinkedHashMap<EntityTable, ArrayList<Object>>();
+            level.put(node, tables);
+        }
+        ArrayList<Object> list = tables.get(table);
+        if (list == null) {
+            list = new ArrayList<Object>();
+            tables.put(table, list);
+        }
+        list.add(obj);
     }
 
     /* --------------------------------  私有方法: 集合操作相关 -------------------------------- */
@@ -533,24 +863,26 @@ final class CascadeSQLiteImpl extends SQLite {
                 @Override
                 public Integer doTransaction(SQLiteDatabase db) throws Exception {
                     //0. 保存第一个实体
-                    HashMap<String, Integer> handleMap = new HashMap<String, Integer>();
+                    CascadeContext context = new CascadeContext();
+                    RelationBatch batch = new RelationBatch();
                     Iterator<T> iterator = collection.iterator();
                     Object entity = iterator.next();
                     SQLStatement stmt = SQLBuilder.buildReplaceSql(entity);
                     mTableManager.checkOrCreateTable(db, entity);
-                    insertRecursive(stmt, entity, db, handleMap);
+                    insertRecursive(stmt, entity, db, context, batch);
 
                     //1.0 保存剩余实体
                     while (iterator.hasNext()) {
                         entity = iterator.next();
-                        //1.1 绑定对应值
-                        stmt.bindArgs = SQLBuilder.buildInsertSqlArgsOnly(entity);
-                        //1.2 保存当前实体
-                        insertRecursive(stmt, entity, db, handleMap);
+                        //1.1 保存当前实体，执行时直接从实体绑定对应值
+                        insertRecursive(stmt, entity, db, context, batch);
                     }
+                    //2. 统一写入全部关系
+                    batch.flush(db, mTableManager);
                     return collection.size();
                 }
             });
+            mTableManager.upgradePendingMappingTables(db);
             if (rowID != null) {
                 return rowID;
             }
@@ -572,24 +904,26 @@ final class CascadeSQLiteImpl extends SQLite {
                 @Override
                 public Integer doTransaction(SQLiteDatabase db) throws Exception {
                     //0. 保存第一个实体
-                    HashMap<String, Integer> handleMap = new HashMap<String, Integer>();
+                    CascadeContext context = new CascadeContext();
+                    RelationBatch batch = new RelationBatch();
                     Iterator<T> iterator = collection.iterator();
                     Object entity = iterator.next();
                     SQLStatement stmt = SQLBuilder.buildInsertSql(entity, conflictAlgorithm);
                     mTableManager.checkOrCreateTable(db, entity);
-                    insertRecursive(stmt, entity, db, handleMap);
+                    insertRecursive(stmt, entity, db, context, batch);
 
                     //1.0 保存剩余实体
                     while (iterator.hasNext()) {
-                        //1.1 绑定对应值
                         entity = iterator.next();
-                        //1.2 保存当前实体
-                        stmt.bindArgs = SQLBuilder.buildInsertSqlArgsOnly(entity);
-                        insertRecursive(stmt, entity, db, handleMap);
+                        //1.1 保存当前实体，执行时直接从实体绑定对应值
+                        insertRecursive(stmt, entity, db, context, batch);
                     }
+                    //2. 统一写入全部关系
+                    batch.flush(db, mTableManager);
                     return collection.size();
                 }
             });
+            mTableManager.upgradePendingMappingTables(db);
             if (rowID != null) {
                 return rowID;
             }
@@ -612,23 +946,29 @@ final class CascadeSQLiteImpl extends SQLite {
                 @Override
                 public Integer doTransaction(SQLiteDatabase db) throws Exception {
                     //0. 保存第一个实体
-                    HashMap<String, Integer> handleMap = new HashMap<String, Integer>();
+                    CascadeContext context = new CascadeContext();
+                    RelationBatch batch = new RelationBatch();
                     Iterator<T> iterator = collection.iterator();
                     Object entity = iterator.next();
                     SQLStatement stmt = SQLBuilder.buildUpdateSql(entity, cvs, conflictAlgorithm);
                     mTableManager.checkOrCreateTable(db, entity);
-                    updateRecursive(stmt, entity, db, handleMap);
+                    updateRecursive(stmt, entity, db, context, batch);
                     //1.0 保存剩余实体
                     while (iterator.hasNext()) {
-                        //1.1 绑定对应值
                         entity = iterator.next();
+                        //1.1 绑定对应值，更新全部列时执行时直接从实体绑定
+                        if (cvs != null && cvs.checkColumns()) {
+                            stmt.bindArgs = SQLBuilder.buildUpdateSqlArgsOnly(entity, cvs);
+                        }
                         //1.2 保存当前实体
-                        stmt.bindArgs = SQLBuilder.buildUpdateSqlArgsOnly(entity, cvs);
-                        updateRecursive(stmt, entity, db, handleMap);
+                        updateRecursive(stmt, entity, db, context, batch);
                     }
+                    //2. 统一写入全部关系
+                    batch.flush(db, mTableManager);
                     return collection.size();
                 }
             });
+            mTableManager.upgradePendingMappingTables(db);
             if (rowID != null) {
                 return rowID;
             }
@@ -653,9 +993,10 @@ final class CascadeSQLiteImpl extends SQLite {
                     @Override
                     public Integer doTransaction(SQLiteDatabase db) throws Exception {
                         //0. 删除第一个实体
-                        HashMap<String, Integer> handleMap = new HashMap<String, Integer>();
+                        CascadeContext context = new CascadeContext();
+                        RelationBatch batch = new RelationBatch();
                         SQLStatement stmt = SQLBuilder.buildDeleteSql(entity);
-                        deleteRecursive(stmt, entity, db, handleMap);
+                        deleteRecursive(stmt, entity, db, context, batch);
 
                         //1.0 保存剩余实体
                         while (iterator.hasNext()) {
@@ -663,11 +1004,14 @@ final class CascadeSQLiteImpl extends SQLite {
                             Object next = iterator.next();
                             //1.2 保存当前实体
                             stmt.bindArgs = getDeleteStatementArgs(next);
-                            deleteRecursive(stmt, next, db, handleMap);
+                            deleteRecursive(stmt, next, db, context, batch);
                         }
+                        //2. 统一删除全部关系
+                        batch.flush(db, mTableManager);
                         return collection.size();
                     }
                 });
+                mTableManager.upgradePendingMappingTables(db);
                 if (rowID != null) {
                     return rowID;
                 }
@@ -707,12 +1051,12 @@ final class CascadeSQLiteImpl extends SQLite {
      * @return rowID of entity
      */
     private long handleEntityRecursive(int type, SQLStatement stmt, Object obj1, SQLiteDatabase db,
-                                       HashMap<String, Integer> handleMap) throws IOException, IllegalAccessException {
+                                       CascadeContext context, RelationBatch batch) throws IOException, IllegalAccessException {
         EntityTable table1 = TableManager.getTable(obj1);
         Object key1 = FieldUtil.get(table1.key.field, obj1);
 
         // 0. 若[当前实体]已存储过，不再操作
-        if (handleMap.get(table1.name + key1) != null) {
+        if (!context.visit(obj1)) {
             return SQLStatement.NONE;
         }
         // 1. 存储[当前实体]
@@ -723,7 +1067,7 @@ final class CascadeSQLiteImpl extends SQLite {
                 key1 = FieldUtil.get(table1.key.field, obj1);
                 break;
             case TYPE_UPDATE:
-                rowID = stmt.execUpdate(db);
+                rowID = stmt.execUpdateWithMapping(db, obj1, null);
                 break;
             case TYPE_DELETE:
                 rowID = stmt.execDelete(db);
@@ -731,10 +1075,9 @@ final class CascadeSQLiteImpl extends SQLite {
             default:
 
         }
-        handleMap.put(table1.name + key1, 1);
         // 2. 存储[关联实体]以及其[关系映射]
         boolean insertNew = type != TYPE_DELETE;
-        handleMapping(key1, obj1, db, insertNew, handleMap);
+        handleMapping(key1, obj1, db, insertNew, context, batch);
         return rowID;
     }
 
@@ -746,21 +1089,20 @@ final class CascadeSQLiteImpl extends SQLite {
      * @return rowID of entity
      */
     private int updateRecursive(SQLStatement stmt, Object obj1, SQLiteDatabase db,
-                                HashMap<String, Integer> handleMap) throws IOException, IllegalAccessException {
+                                CascadeContext context, RelationBatch batch) throws IOException, IllegalAccessException {
         EntityTable table1 = TableManager.getTable(obj1);
         Object key1 = FieldUtil.get(table1.key.field, obj1);
 
         // 0. 若[当前实体]已存储过，不再操作
-        if (handleMap.get(table1.name + key1) != null) {
+        if (!context.visit(obj1)) {
             return SQLStatement.NONE;
         }
         // 1. 更新[当前实体]
-        int rowID = stmt.execUpdate(db);
+        int rowID = stmt.execUpdateWithMapping(db, obj1, null);
         key1 = FieldUtil.get(table1.key.field, obj1);
-        handleMap.put(table1.name + key1, 1);
 
         // 2. 存储[关联实体]以及其[关系映射]
-        handleMapping(key1, obj1, db, true, handleMap);
+        handleMapping(key1, obj1, db, true, context, batch);
         return rowID;
     }
 
@@ -772,20 +1114,19 @@ final class CascadeSQLiteImpl extends SQLite {
      * @return rowID of entity
      */
     private int deleteRecursive(SQLStatement stmt, Object obj1, SQLiteDatabase db,
-                                HashMap<String, Integer> handleMap) throws IOException, IllegalAccessException {
+                                CascadeContext context, RelationBatch batch) throws IOException, IllegalAccessException {
         EntityTable table1 = TableManager.getTable(obj1);
         Object key1 = FieldUtil.get(table1.key.field, obj1);
 
         // 0. 若[当前实体]已删除过，不再操作
-        if (handleMap.get(table1.name + key1) != null) {
+        if (!context.visit(obj1)) {
             return SQLStatement.NONE;
         }
         // 1. 删除[当前实体]
         int rowID = stmt.execDelete(db);
-        handleMap.put(table1.name + key1, 1);
 
         // 2. 删除[关联实体]以及其[关系映射]
-        handleMapping(key1, obj1, db, false, handleMap);
+        handleMapping(key1, obj1, db, false, context, batch);
         return rowID;
     }
 
@@ -797,22 +1138,21 @@ final class CascadeSQLiteImpl extends SQLite {
      * @return rowID of entity
      */
     private long insertRecursive(SQLStatement stmt, Object obj1, SQLiteDatabase db,
-                                 HashMap<String, Integer> handleMap) throws IOException, IllegalAccessException {
+                                 CascadeContext context, RelationBatch batch) throws IOException, IllegalAccessException {
         EntityTable table1 = TableManager.getTable(obj1);
         Object key1 = FieldUtil.get(table1.key.field, obj1);
 
         // 0. 若[当前实体]已存储过，不再操作
-        if (handleMap.get(table1.name + key1) != null) {
+        if (!context.visit(obj1)) {
             return SQLStatement.NONE;
         }
         // 1. 存储[当前实体]
         long rowID = stmt.execInsert(db, obj1);
         key1 = FieldUtil.get(table1.key.field, obj1);
-        handleMap.put(table1.name + key1, 1);
 
 
         // 2. 存储[关联实体]以及其[关系映射]
-        handleMapping(key1, obj1, db, true, handleMap);
+        handleMapping(key1, obj1, db, true, context, batch);
         return rowID;
     }
 
@@ -825,10 +1165,10 @@ final class CascadeSQLiteImpl extends SQLite {
      * @param db   可写数据库对象
      * @return rowID of entity
      */
-    private long checkTableAndSaveRecursive(Object obj1, SQLiteDatabase db, HashMap<String, Integer> handleMap)
+    private long checkTableAndSaveRecursive(Object obj1, SQLiteDatabase db, CascadeContext context, RelationBatch batch)
             throws IOException, IllegalAccessException {
         mTableManager.checkOrCreateTable(db, obj1);
-        return insertRecursive(SQLBuilder.buildReplaceSql(obj1), obj1, db, handleMap);
+        return insertRecursive(SQLBuilder.buildReplaceSql(obj1), obj1, db, context, batch);
     }
 
     /**
@@ -839,11 +1179,11 @@ final class CascadeSQLiteImpl extends SQLite {
      * @return rowID of entity
      */
     private int checkTableAndDeleteRecursive(Object obj1, SQLiteDatabase db,
-            HashMap<String, Integer> handleMap)
+            CascadeContext context, RelationBatch batch)
             throws IOException, IllegalAccessException {
         EntityTable table = TableManager.getTable(obj1);
         if (mTableManager.isSQLTableCreated(table.name)) {
-            return deleteRecursive(SQLBuilder.buildDeleteSql(obj1), obj1, db, handleMap);
+            return deleteRecursive(SQLBuilder.buildDeleteSql(obj1), obj1, db, context, batch);
         }
         return SQLStatement.NONE;
     }
@@ -852,7 +1192,7 @@ final class CascadeSQLiteImpl extends SQLite {
      * 处理一个实体中所有的关联实体。
      */
     private void handleMapping(Object key1, Object obj1, SQLiteDatabase db,
-            boolean insertNew, HashMap<String, Integer> handleMap)
+            boolean insertNew, CascadeContext context, RelationBatch batch)
             throws IOException, IllegalAccessException {
         EntityTable table1 = TableManager.getTable(obj1);
         // 2. 存储[关联实体]以及其[关系映射]
@@ -861,18 +1201,27 @@ final class CascadeSQLiteImpl extends SQLite {
                 if (map.isToOne()) {
                     // handle <one to one>,<many to one> relation.
                     Object obj2 = FieldUtil.get(map.field, obj1);
+                    if (map.lazy && obj2 != null) {
+                        // 保存时未加载的关联保持原有关系，删除时需加载后级联删除
+                        LazyToOne<?> lazy = (LazyToOne<?>) obj2;
+                        obj2 = insertNew ? lazy.peek() : lazy.get();
+                    }
                     if (obj2 != null) {
-                        handleMapToOne(table1, key1, obj2, db, insertNew, handleMap);
+                        handleMapToOne(table1, key1, obj2, db, insertNew, context, batch);
                     }
                 } else if (map.isToMany()) {
                     // hanlde <one to many>,<many to many> relation.
                     Object array = FieldUtil.get(map.field, obj1);
+                    if (insertNew && array instanceof LazyList) {
+                        // 未替换的懒加载列表保持原有关系
+                        continue;
+                    }
                     if (array != null) {
                         if (array instanceof Collection<?>) {
-                            handleMapToMany(table1, key1, (Collection<?>) array, db, insertNew, handleMap);
+                            handleMapToMany(table1, key1, (Collection<?>) array, db, insertNew, context, batch);
                         } else if (array instanceof Object[]) {
                             // 一定要强转为(Object[])
-                            handleMapToMany(table1, key1, Arrays.asList((Object[]) array), db, insertNew, handleMap);
+                            handleMapToMany(table1, key1, Arrays.asList((Object[]) array), db, insertNew, context, batch);
                         } else {
                             throw new RuntimeException("OneToMany and ManyToMany Relation, " +
                                                        "you must use collection or array object");
@@ -887,37 +1236,33 @@ final class CascadeSQLiteImpl extends SQLite {
      * 处理N对1关系的关联实体
      */
     private void handleMapToOne(EntityTable table1, Object key1, Object obj2, SQLiteDatabase db,
-                                boolean insertNew, HashMap<String, Integer> handleMap)
+                                boolean insertNew, CascadeContext context, RelationBatch batch)
             throws IllegalAccessException, IOException {
         if (obj2 != null) {
 
             // 注意：先递归处理关联对象（如果其主键无值，可以通过先处理赋值）
             if (insertNew) {
                 // 递归存储[关联实体]
-                checkTableAndSaveRecursive(obj2, db, handleMap);
+                checkTableAndSaveRecursive(obj2, db, context, batch);
             } else {
                 // 递归删除[关联实体]
-                checkTableAndDeleteRecursive(obj2, db, handleMap);
+                checkTableAndDeleteRecursive(obj2, db, context, batch);
             }
 
-            // 现在处理(当前实体)和(关联对象)的[映射关系]
+            // 现在处理(当前实体)和(关联对象)的[映射关系]，事务结束前统一写入
             EntityTable table2 = TableManager.getTable(obj2.getClass());
-            String mapTableName = TableManager.getMapTableName(table1, table2);
-
-            // 删掉旧的[映射关系]
-            mTableManager.checkOrCreateMappingTable(db, mapTableName, table1.name, table2.name);
-            SQLStatement st = SQLBuilder.buildMappingDeleteSql(mapTableName, key1, table1);
-            st.execDelete(db);
-
-            // 存储新的[映射关系]
             if (insertNew) {
+                // 关系未变时不改动关系表
                 Object key2 = FieldUtil.get(table2.key.field, obj2);
-                st = SQLBuilder.buildMappingToOneSql(mapTableName, key1, key2, table1, table2);
-                if (st != null) {
-                    st.execInsert(db);
+                ArrayList<String> key2List = new ArrayList<String>(1);
+                if (key2 != null) {
+                    key2List.add(String.valueOf(key2));
                 }
+                batch.sync(table1, table2, key1, key2List);
+            } else {
+                // 删掉旧的[映射关系]
+                batch.deleteAll(table1, table2, key1);
             }
-
         }
     }
 
@@ -925,13 +1270,10 @@ final class CascadeSQLiteImpl extends SQLite {
      * 处理N对N关系的关联实体
      */
     private void handleMapToMany(EntityTable table1, Object key1, Collection coll, SQLiteDatabase db,
-                                 boolean insertNew, HashMap<String, Integer> handleMap)
+                                 boolean insertNew, CascadeContext context, RelationBatch batch)
             throws IllegalAccessException, IOException {
         if (coll != null) {
-            boolean isF = true;
-            StringBuilder values = new StringBuilder();
-            ArrayList<String> list = new ArrayList<String>();
-            String key1Str = String.valueOf(key1);
+            LinkedHashSet<String> key2Set = new LinkedHashSet<String>();
             Class<?> class2 = null;
             EntityTable table2 = null;
             // 遍历每个关联的实体
@@ -940,52 +1282,33 @@ final class CascadeSQLiteImpl extends SQLite {
                     // 注意：先递归处理关联对象（如果其主键无值，可以通过先处理赋值）
                     if (insertNew) {
                         // 递归存储[关联实体]
-                        checkTableAndSaveRecursive(obj2, db, handleMap);
+                        checkTableAndSaveRecursive(obj2, db, context, batch);
                     } else {
                         // 递归删除[关联实体]
-                        checkTableAndDeleteRecursive(obj2, db, handleMap);
+                        checkTableAndDeleteRecursive(obj2, db, context, batch);
                     }
 
                     if (class2 == null) {
                         class2 = obj2.getClass();
                         table2 = TableManager.getTable(class2);
                     }
-                    // 提前构造[存储新映射关系]的SQL语句和参数
+                    // 收集新的关联主键
                     if (insertNew) {
                         Object key2 = FieldUtil.get(table2.key.field, obj2);
                         if (key2 != null) {
-                            if (isF) {
-                                values.append(SQLBuilder.TWO_HOLDER);
-                                isF = false;
-                            } else {
-                                values.append(SQLBuilder.COMMA).append(SQLBuilder.TWO_HOLDER);
-                            }
-                            list.add(key1Str);
-                            list.add(String.valueOf(key2));
+                            key2Set.add(String.valueOf(key2));
                         }
                     }
                 }
             }
-            // 现在处理(当前实体)和(关联对象)的[映射关系]
+            // 现在处理(当前实体)和(关联对象)的[映射关系]，事务结束前统一写入
             if (table2 != null) {
-                String tableName = TableManager.getMapTableName(table1, table2);
-
-                // 删掉旧的[映射关系]
-                mTableManager.checkOrCreateMappingTable(db, tableName, table1.name, table2.name);
-                SQLStatement st = SQLBuilder.buildMappingDeleteSql(tableName, key1, table1);
-                st.execDelete(db);
-
-                // 存储新的[映射关系]
                 if (insertNew) {
-                    Object[] args = list.toArray(new String[list.size()]);
-                    if (!Checker.isEmpty(args)) {
-                        SQLStatement stmt = new SQLStatement();
-                        stmt.sql = SQLBuilder.REPLACE + SQLBuilder.INTO + tableName
-                                   + SQLBuilder.PARENTHESES_LEFT + table1.name + SQLBuilder.COMMA
-                                   + table2.name + SQLBuilder.PARENTHESES_RIGHT + SQLBuilder.VALUES + values;
-                        stmt.bindArgs = args;
-                        stmt.execInsert(db);
-                    }
+                    // 只删除移除的、插入新增的[映射关系]
+                    batch.sync(table1, table2, key1, key2Set);
+                } else {
+                    // 删掉旧的[映射关系]
+                    batch.deleteAll(table1, table2, key1);
                 }
             }
         }
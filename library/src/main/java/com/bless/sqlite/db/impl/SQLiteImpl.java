@@ -6,6 +6,8 @@ import android.database.sqlite.SQLiteDatabase;
 import com.bless.sqlite.db.DataBaseConfig;
 import com.bless.sqlite.db.assit.Checker;
 import com.bless.sqlite.db.assit.Querier;
+import com.bless.sqlite.db.assit.EntityIterator;
+import com.bless.sqlite.db.assit.PreparedQuery;
 import com.bless.sqlite.db.assit.QueryBuilder;
 import com.bless.sqlite.db.assit.SQLStatement;
 import com.bless.sqlite.db.assit.Transaction;
@@ -20,6 +22,7 @@ import com.bless.sqlite.db.TableManager;
 import com.bless.sqlite.db.assit.SQLBuilder;
 import com.bless.sqlite.db.assit.WhereBuilder;
 import com.bless.sqlite.db.model.ColumnsValue;
+import com.bless.sqlite.db.model.Page;
 import com.bless.sqlite.db.utils.DataUtil;
 import com.bless.sqlite.db.utils.FieldUtil;
 
@@ -856,6 +859,24 @@ final class SQLiteImpl extends SQLite {
 		return null;
 	}
 
+	@Override
+	public <T> ArrayList<T> query(PreparedQuery<T> pq, Object... args) {
+		// TODO Auto-generated method stub
+		return null;
+	}
+
+	@Override
+	public <T> EntityIterator<T> iterate(QueryBuilder<T> qb) {
+		// TODO Auto-generated method stub
+		return null;
+	}
+
+	@Override
+	public <T> Page<T> queryPage(QueryBuilder<T> qb) {
+		// TODO Auto-generated method stub
+		return null;
+	}
+
 	@Override
 	public <T> T queryById(long id, Class<T> clazz) {
 		// TODO Auto-generated method stub
@@ -1,19 +1,27 @@
 package com.bless.sqlite.db.impl;
 
 import android.database.sqlite.SQLiteDatabase;
+import android.os.Build;
 
 import com.bless.sqlite.db.DataBaseConfig;
 import com.bless.sqlite.db.TableManager;
+import com.bless.sqlite.db.annotation.Conflict;
 import com.bless.sqlite.db.assit.Checker;
+import com.bless.sqlite.db.assit.EntityIterator;
+import com.bless.sqlite.db.assit.PreparedQuery;
 import com.bless.sqlite.db.assit.QueryBuilder;
 import com.bless.sqlite.db.assit.SQLStatement;
 import com.bless.sqlite.db.assit.WhereBuilder;
 import com.bless.sqlite.db.model.ColumnsValue;
+import com.bless.sqlite.db.enums.Strategy;
 import com.bless.sqlite.db.model.ConflictAlgorithm;
 import com.bless.sqlite.db.model.EntityTable;
+import com.bless.sqlite.db.model.Page;
+import com.bless.sqlite.db.model.Property;
 import com.bless.sqlite.SQLite;
 import com.bless.sqlite.db.assit.CollSpliter;
 import com.bless.sqlite.db.assit.SQLBuilder;
+import com.bless.sqlite.db.utils.FieldUtil;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -119,8 +127,11 @@ final class SingleSQLiteImpl extends SQLite {
             if (!Checker.isEmpty(collection)) {
                 SQLiteDatabase db = mHelper.getWritableDatabase();
                 Object entity = collection.iterator().next();
-                SQLStatement stmt = SQLBuilder.buildInsertAllSql(entity, conflictAlgorithm);
                 mTableManager.checkOrCreateTable(db, entity);
+                if (canInsertInBatch(collection, conflictAlgorithm)) {
+                    return insertInBatch(db, entity, collection, conflictAlgorithm);
+                }
+                SQLStatement stmt = SQLBuilder.buildInsertAllSql(entity, conflictAlgorithm);
                 return stmt.execInsertCollection(db, collection);
             }
         } catch (Exception e) {
@@ -131,6 +142,86 @@ final class SingleSQLiteImpl extends SQLite {
         return SQLStatement.NONE;
     }
 
+    /**
+     * 是否可以使用多行 VALUES 批量插入
+     * 1. SQLite 3.7.11 (Android 4.1) 开始支持多行 VALUES
+     * 2. 只能使用默认、ABORT、FAIL、ROLLBACK：IGNORE 会跳过某些行，REPLACE 会在语句中途删除冲突的行(包括同一批内重复的行)，
+     * 没有 AUTOINCREMENT 的表 rowID 可能不连续或被重用，插入行数及倒推的主键都不可靠；
+     * 列上的 {@link Conflict} 为 IGNORE、REPLACE 时同理
+     * 3. 系统分配的主键需要依据 rowID 倒推，所以实体要么都未设置主键，要么都已设置
+     */
+    private <T> boolean canInsertInBatch(Collection<T> collection, ConflictAlgorithm conflictAlgorithm)
+            throws IllegalAccessException {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN || collection.size() < 2) {
+            return false;
+        }
+        if (conflictAlgorithm != null && conflictAlgorithm != ConflictAlgorithm.None
+            && conflictAlgorithm != ConflictAlgorithm.Abort && conflictAlgorithm != ConflictAlgorithm.Fail
+            && conflictAlgorithm != ConflictAlgorithm.Rollback) {
+            return false;
+        }
+        EntityTable table = TableManager.getTable(collection.iterator().next());
+        if (hasSkippingConflict(table)) {
+            return false;
+        }
+        if (table.key == null || !table.key.isAssignedBySystem()) {
+            return true;
+        }
+        Boolean assigned = null;
+        for (T t : collection) {
+            boolean hasKey = FieldUtil.getAssignedKeyObject(table.key, t) != null;
+            if (assigned == null) {
+                assigned = hasKey;
+            } else if (assigned != hasKey) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 是否有列在建表时声明了 ON CONFLICT IGNORE 或 REPLACE
+     */
+    private static boolean hasSkippingConflict(EntityTable table) {
+        if (table.pmap == null) {
+            return false;
+        }
+        for (Property p : table.pmap.values()) {
+            Conflict conflict = p != null ? p.field.getAnnotation(Conflict.class) : null;
+            if (conflict != null && (conflict.value() == Strategy.IGNORE || conflict.value() == Strategy.REPLACE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 多行 VALUES 批量插入，每条语句的参数数量不超过 {@link SQLStatement#IN_TOP_LIMIT}，
+     * 整块的语句只编译一次，重复使用。
+     */
+    private <T> int insertInBatch(final SQLiteDatabase db, Object entity, Collection<T> collection,
+                                  final ConflictAlgorithm conflictAlgorithm) throws Exception {
+        EntityTable table = TableManager.getTable(entity);
+        int columns = 1 + (table.pmap == null ? 0 : table.pmap.size());
+        final int rows = Math.max(1, Math.min(SQLStatement.BATCH_ROWS_LIMIT, SQLStatement.IN_TOP_LIMIT / columns));
+        final SQLStatement fullStmt = SQLBuilder.buildInsertBatchSql(entity, conflictAlgorithm, rows);
+        db.beginTransaction();
+        try {
+            int count = CollSpliter.split(collection, rows, new CollSpliter.Spliter<T>() {
+                @Override
+                public int oneSplit(ArrayList<T> list) throws Exception {
+                    SQLStatement stmt = list.size() == rows ? fullStmt
+                            : SQLBuilder.buildInsertBatchSql(list.get(0), conflictAlgorithm, list.size());
+                    return stmt.execInsertBatch(db, list);
+                }
+            });
+            db.setTransactionSuccessful();
+            return count;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
     @Override
     public int update(Object entity) {
         return update(entity, null, null);
@@ -325,19 +416,56 @@ final class SingleSQLiteImpl extends SQLite {
         }
     }
 
+    @Override
+    public <T> ArrayList<T> query(PreparedQuery<T> pq, Object... args) {
+        if (mTableManager.isSQLTableCreated(pq.getTableName())) {
+            acquireReference();
+            try {
+                return pq.query(mHelper.getReadableDatabase(), args);
+            } finally {
+                releaseReference();
+            }
+        } else {
+            return new ArrayList<T>();
+        }
+    }
+
+    @Override
+    public <T> EntityIterator<T> iterate(QueryBuilder<T> qb) {
+        if (mTableManager.isSQLTableCreated(qb.getTableName())) {
+            SQLStatement stmt = qb.createStatement();
+            acquireReference();
+            return EntityIterator.query(mHelper.getReadableDatabase(), stmt, qb.getQueryClass(), this);
+        } else {
+            return EntityIterator.empty(qb.getQueryClass());
+        }
+    }
+
+    @Override
+    public <T> Page<T> queryPage(QueryBuilder<T> qb) {
+        return qb.toPage(query(qb));
+    }
+
     @Override
     public <T> T queryById(long id, Class<T> claxx) {
-        return queryById(String.valueOf(id), claxx);
+        return queryByKey(id, claxx);
     }
 
     @Override
     public <T> T queryById(String id, Class<T> claxx) {
+        return queryByKey(id, claxx);
+    }
+
+    /**
+     * 根据主键查询，主键值按原生类型绑定
+     */
+    private <T> T queryByKey(Object id, Class<T> claxx) {
         final EntityTable table = TableManager.getTable(claxx, false);
         if (mTableManager.isSQLTableCreated(table.name)) {
             acquireReference();
             try {
                 SQLStatement stmt = new QueryBuilder<T>(claxx)
-                        .where(table.key.column + "=?", new String[]{id})
+                        .whereEquals(table.key.column, id)
                         .createStatement();
                 ArrayList<T> list = stmt.query(mHelper.getReadableDatabase(), claxx);
                 if (!Checker.isEmpty(list)) {
@@ -1,9 +1,14 @@
 package com.bless.sqlite.db.model;
 
+import com.bless.sqlite.db.assit.EntityAdapter;
+import com.bless.sqlite.db.assit.EntityBinder;
+import com.bless.sqlite.db.assit.EntityMapper;
+
 import java.io.Serializable;
 import java.lang.annotation.Annotation;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 实体的表结构
@@ -31,6 +36,22 @@ public class EntityTable implements Serializable {
      * N对N 关系映射表
      */
     public ArrayList<MapProperty> mappingList;
+    /**
+     * 编译期生成的建表语句，没有则运行时构建
+     */
+    public String createTableSql;
+    /**
+     * 编译期生成的适配器，没有则为null(使用反射)
+     */
+    public transient EntityAdapter<?> adapter;
+    /**
+     * 参数绑定器，首次使用时创建
+     */
+    public transient EntityBinder binder;
+    /**
+     * 结果行映射计划，以Cursor列布局为key，首次使用时创建
+     */
+    public transient volatile ConcurrentHashMap<String, EntityMapper> mappers;
     /**
      * 是否已对该表进行检查
      */
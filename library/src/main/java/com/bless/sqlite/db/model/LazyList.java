@@ -0,0 +1,131 @@
+package com.bless.sqlite.db.model;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 懒加载的N对多关联实体列表，由级联查询注入到 {@code @Mapping(value = Relation.OneToMany, lazy = true)} 的属性：
+ * <pre>
+ * &#64;Mapping(value = Relation.OneToMany, lazy = true)
+ * private List&lt;Message&gt; messages;
+ * </pre>
+ * 首次访问时通过 COUNT 得到大小，按页从关系表读取关联实体，内存中最多保留 {@link #MAX_PAGES} 页，
+ * 顺序遍历时每页从上一页的最后一个关联主键继续读取，不使用 OFFSET。
+ * <p>
+ * 列表只读，大小为首次访问时的快照；关联实体已被删除时对应位置为null。
+ * 保存时仍为本列表的属性保持数据库中原有的关系不变，替换为普通集合后才会更新关系。
+ * 序列化时全部加载并写出为 {@link ArrayList}，加载器不序列化。
+ */
+public class LazyList<T> extends AbstractList<T> implements Serializable {
+    private static final long serialVersionUID = 4186420512938651190L;
+
+    public static final int PAGE_SIZE = 50;
+    public static final int MAX_PAGES = 4;
+
+    private final transient Loader<T> loader;
+    private final int pageSize;
+    private int size = -1;
+    /**
+     * 最近访问的页，超出时淘汰最久未访问的
+     */
+    private final transient LinkedHashMap<Integer, List<T>> pages;
+    /**
+     * 已知起点的页：上一页最后一个关联主键
+     */
+    private final transient HashMap<Integer, Object> pageStarts = new HashMap<Integer, Object>();
+
+    public LazyList(Loader<T> loader) {
+        this(loader, PAGE_SIZE, MAX_PAGES);
+    }
+
+    public LazyList(Loader<T> loader, int pageSize, final int maxPages) {
+        if (pageSize <= 0 || maxPages <= 0) {
+            throw new IllegalArgumentException("invalid page size or max pages");
+        }
+        this.loader = loader;
+        this.pageSize = pageSize;
+        this.pages = new LinkedHashMap<Integer, List<T>>(maxPages + 1, 1f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<T>> eldest) {
+                return size() > maxPages;
+            }
+        };
+    }
+
+    @Override
+    public synchronized T get(int location) {
+        if (location < 0 || location >= size()) {
+            throw new IndexOutOfBoundsException("Invalid index " + location + ", size is " + size);
+        }
+        int page = location / pageSize;
+        List<T> list = pages.get(page);
+        if (list == null) {
+            list = loadPage(page);
+        }
+        int i = location - page * pageSize;
+        return i < list.size() ? list.get(i) : null;
+    }
+
+    @Override
+    public synchronized int size() {
+        if (size < 0) {
+            size = loader.count();
+        }
+        return size;
+    }
+
+    /**
+     * 内存中已加载的页数
+     */
+    public synchronized int getLoadedPages() {
+        return pages.size();
+    }
+
+    /**
+     * 序列化为已全部加载的 {@link ArrayList}，反序列化后不再依赖数据库
+     */
+    private synchronized Object writeReplace() {
+        if (loader == null) {
+            return new ArrayList<T>();
+        }
+        return new ArrayList<T>(this);
+    }
+
+    private List<T> loadPage(int page) {
+        Object after = pageStarts.get(page);
+        Page<T> result = loader.load(page * pageSize, pageSize, page == 0 ? null : after);
+        List<T> list = result.getList();
+        pages.put(page, list);
+        if (result.getNextKey() != null) {
+            pageStarts.put(page + 1, result.getNextKey()[0]);
+        }
+        return list;
+    }
+
+    /**
+     * 关联实体加载器
+     */
+    public interface Loader<T> {
+        /**
+         * 关联实体数量
+         */
+        int count();
+
+        /**
+         * 读取一页关联实体，按关联主键排序
+         *
+         * @param offset 页的起始位置，after 为null时使用
+         * @param limit  每页数量
+         * @param after  上一页最后一个关联主键，未知时为null
+         * @return 本页关联实体，下一页起点为本页最后一个关联主键
+         */
+        Page<T> load(int offset, int limit, Object after);
+    }
+}
@@ -0,0 +1,99 @@
+package com.bless.sqlite.db.model;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+/**
+ * 懒加载的N对一关联实体：
+ * <pre>
+ * &#64;Mapping(value = Relation.ManyToOne, lazy = true)
+ * private LazyToOne&lt;Company&gt; company;
+ * </pre>
+ * 级联查询时只设置加载器，首次调用 {@link #get()} 时才通过查询它的 SQLite 加载关联实体(及其非懒加载的关联)。
+ * 保存时未加载的关联保持数据库中原有的关系不变。
+ */
+public class LazyToOne<T> implements Serializable {
+    private static final long serialVersionUID = -3516094376218473402L;
+
+    private transient Loader<T> loader;
+    private T value;
+    private boolean loaded;
+
+    /**
+     * 没有关联实体
+     */
+    public LazyToOne() {
+        this.loaded = true;
+    }
+
+    public LazyToOne(T value) {
+        this.value = value;
+        this.loaded = true;
+    }
+
+    /**
+     * 获取关联实体，未加载时先从数据库加载
+     */
+    public synchronized T get() {
+        // 没有加载器(如反序列化得到)时保持未加载，保存时不会清除数据库中的关系
+        if (!loaded && loader != null) {
+            value = loader.load();
+            loader = null;
+            loaded = true;
+        }
+        return value;
+    }
+
+    /**
+     * 设置关联实体，保存时更新关系
+     */
+    public synchronized void set(T value) {
+        this.value = value;
+        this.loader = null;
+        this.loaded = true;
+    }
+
+    /**
+     * 是否已加载或已设置
+     */
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * 已加载时返回关联实体，未加载时返回null且不触发加载
+     */
+    public synchronized T peek() {
+        return loaded ? value : null;
+    }
+
+    /**
+     * 查询时由 SQLite 设置
+     */
+    public synchronized void setLoader(Loader<T> loader) {
+        this.loader = loader;
+        this.value = null;
+        this.loaded = false;
+    }
+
+    /**
+     * 序列化前先加载关联实体，反序列化后不再依赖数据库
+     */
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        get();
+        out.defaultWriteObject();
+    }
+
+    @Override
+    public String toString() {
+        return "LazyToOne{" + (loaded ? String.valueOf(value) : "not loaded") + "}";
+    }
+
+    /**
+     * 关联实体加载器
+     */
+    public interface Loader<T> {
+        T load();
+    }
+}
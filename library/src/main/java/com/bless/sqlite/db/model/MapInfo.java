@@ -4,6 +4,7 @@ import com.bless.sqlite.db.assit.Checker;
 import com.bless.sqlite.db.assit.SQLStatement;
 
 import java.util.ArrayList;
+import java.util.Collection;
 
 /**
  * 映射表类
@@ -18,14 +19,46 @@ public class MapInfo {
             this.column2 = col2;
         }
 
+        public MapTable(String name, EntityTable table1, EntityTable table2) {
+            this(name, table1.name, table2.name);
+            this.table1 = table1;
+            this.table2 = table2;
+        }
+
         public String name;
         public String column1;
         public String column2;
+        /**
+         * 关联的两个实体表，用于按主键类型建表
+         */
+        public EntityTable table1;
+        public EntityTable table2;
+    }
+
+    /**
+     * 需要增量同步的关系：key1 的全部关联主键
+     */
+    public static class MapRelation {
+        public MapRelation(MapTable table, EntityTable table1, EntityTable table2, Object key1,
+                Collection<String> key2s) {
+            this.table = table;
+            this.table1 = table1;
+            this.table2 = table2;
+            this.key1 = key1;
+            this.key2s = key2s;
+        }
+
+        public MapTable table;
+        public EntityTable table1;
+        public EntityTable table2;
+        public Object key1;
+        public Collection<String> key2s;
     }
 
     public ArrayList<MapTable> tableList;
     public ArrayList<SQLStatement> mapNewRelationSQL;
     public ArrayList<SQLStatement> delOldRelationSQL;
+    public ArrayList<MapRelation> syncRelationList;
 
     public boolean addTable(MapTable table) {
         if (table.name == null)
@@ -60,8 +93,16 @@ public class MapInfo {
         return delOldRelationSQL.add(st);
     }
 
+    public boolean addSyncRelation(MapRelation relation) {
+        if (syncRelationList == null) {
+            syncRelationList = new ArrayList<MapRelation>();
+        }
+        return syncRelationList.add(relation);
+    }
+
     public boolean isEmpty() {
         return Checker.isEmpty(tableList)
-               || Checker.isEmpty(mapNewRelationSQL) && Checker.isEmpty(delOldRelationSQL);
+               || Checker.isEmpty(mapNewRelationSQL) && Checker.isEmpty(delOldRelationSQL)
+                  && Checker.isEmpty(syncRelationList);
     }
 }
\ No newline at end of file
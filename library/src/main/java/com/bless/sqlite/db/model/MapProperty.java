@@ -11,14 +11,23 @@ public class MapProperty extends Property {
 	private static final long serialVersionUID = 1641409866866426637L;
 	public static final String PRIMARYKEY = " PRIMARY KEY ";
 	public Relation relation;
+	/**
+	 * 懒加载，见 {@link com.bless.sqlite.db.annotation.Mapping#lazy()}
+	 */
+	public boolean lazy;
 
 	public MapProperty(Property p, Relation relation) {
-		this(p.column, p.field, relation);
+		this(p.column, p.field, relation, false);
 	}
 
-	private MapProperty(String column, Field field, Relation relation) {
+	public MapProperty(Property p, Relation relation, boolean lazy) {
+		this(p.column, p.field, relation, lazy);
+	}
+
+	private MapProperty(String column, Field field, Relation relation, boolean lazy) {
 		super(column, field);
 		this.relation = relation;
+		this.lazy = lazy;
 	}
 
     public boolean isToMany(){
@@ -0,0 +1,37 @@
+package com.bless.sqlite.db.model;
+
+import java.util.ArrayList;
+
+/**
+ * 键集分页的一页结果。
+ * <p>
+ * {@link #getNextKey()} 为本页最后一行的分页列值，传给
+ * {@link com.bless.sqlite.db.assit.QueryBuilder#seekAfter(Object...)} 查询下一页；没有下一页时为null。
+ */
+public class Page<T> {
+    private final ArrayList<T> list;
+    private final Object[] nextKey;
+
+    public Page(ArrayList<T> list, Object[] nextKey) {
+        this.list = list;
+        this.nextKey = nextKey;
+    }
+
+    /**
+     * 本页数据
+     */
+    public ArrayList<T> getList() {
+        return list;
+    }
+
+    /**
+     * 下一页的起点，没有下一页时为null
+     */
+    public Object[] getNextKey() {
+        return nextKey;
+    }
+
+    public boolean hasNext() {
+        return nextKey != null;
+    }
+}
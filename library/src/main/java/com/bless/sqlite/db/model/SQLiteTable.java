@@ -34,9 +34,20 @@ public class SQLiteTable implements Serializable {
     @Column("sql")
     public String sql;
 
-    public boolean isTableChecked;
+    /**
+     * 表是否已检查完毕(新列已加入)，检查完成后才置为true，可以不加锁读取
+     */
+    public volatile boolean isTableChecked;
 
-    public HashMap<String, Integer> columns;
+    /**
+     * 关系表是否已检查过旧版本格式，升级完成后才置为true
+     */
+    public volatile boolean isMappingChecked;
+
+    /**
+     * 列名，延迟读取时首次检查该表前为null
+     */
+    public volatile HashMap<String, Integer> columns;
 
     @Override
     public String toString() {
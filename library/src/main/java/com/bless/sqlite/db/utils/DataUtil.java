@@ -4,10 +4,8 @@ import android.annotation.TargetApi;
 import android.database.Cursor;
 import android.os.Build;
 
-import com.bless.sqlite.db.assit.Checker;
+import com.bless.sqlite.db.assit.EntityMapper;
 import com.bless.sqlite.db.model.EntityTable;
-import com.bless.sqlite.db.model.Property;
-import com.bless.sqlite.log.Log;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -172,88 +170,14 @@ public class DataUtil implements Serializable {
      * 将Cursor的数据注入模型
      * 支持11种基本类型，见{@link ClassUtil#isBaseDataType(Class)} ()}
      * 同时支持序列化对象
+     * <p>
+     * 每行都会按列布局查找映射计划，多行结果应在循环外通过{@link EntityMapper#of(EntityTable, Cursor)}获取一次计划再逐行注入。
      *
      * @param c      数据库Cursor
      * @param entity 实体对象
      */
     public static void injectDataToObject(Cursor c, Object entity, EntityTable table) throws Exception {
-        Field f;
-        Property p;
-        for (int i = 0, size = c.getColumnCount(); i < size; i++) {
-            //long start = System.nanoTime();
-
-            String col = c.getColumnName(i);
-            p = null;
-            if (!Checker.isEmpty(table.pmap)) {
-                p = table.pmap.get(col);
-            }
-            if (p == null && table.key != null && col.equals(table.key.column)) {
-                p = table.key;
-            }
-            if (p == null) {
-                if (Log.isPrint) {
-                    Log.w(TAG, "数据库字段[" + col + "]已在实体中被移除");
-                }
-                continue;
-            }
-            f = p.field;
-            f.setAccessible(true);
-            //Log.i(TAG, "parse pre after  " + ((System.nanoTime() - start) / 1000));
-            //start = System.nanoTime();
-            switch (p.classType) {
-                case CLASS_TYPE_STRING:
-                    f.set(entity, c.getString(i));
-                    break;
-                case CLASS_TYPE_BOOLEAN:
-                    f.set(entity, Boolean.parseBoolean(c.getString(i)));
-                    break;
-                case CLASS_TYPE_LONG:
-                    f.set(entity, c.getLong(i));
-                    break;
-                case CLASS_TYPE_INT:
-                    f.set(entity, c.getInt(i));
-                    break;
-                case CLASS_TYPE_DOUBLE:
-                    f.set(entity, c.getDouble(i));
-                    break;
-                case CLASS_TYPE_FLOAT:
-                    f.set(entity, c.getFloat(i));
-                    break;
-                case CLASS_TYPE_SHORT:
-                    f.set(entity, c.getShort(i));
-                    break;
-                case CLASS_TYPE_BYTE:
-                    if (c.getString(i) != null) {
-                        f.set(entity, Byte.parseByte(c.getString(i)));
-                    }
-                    break;
-                case CLASS_TYPE_BYTE_ARRAY:
-                    f.set(entity, c.getBlob(i));
-                    break;
-                case CLASS_TYPE_CHAR:
-                    String value = c.getString(i);
-                    if (!Checker.isEmpty(value)) {
-                        f.set(entity, value.charAt(0));
-                    }
-                    break;
-                case CLASS_TYPE_DATE:
-                    Long time = c.getLong(i);
-                    if (time != null) {
-                        f.set(entity, new Date(time));
-                    }
-                    break;
-                case CLASS_TYPE_SERIALIZABLE:
-                    byte[] bytes = c.getBlob(i);
-                    if (bytes != null) {
-                        //序列化的对象
-                        f.set(entity, byteToObject(bytes));
-                    }
-                    break;
-                default:
-                    break;
-            }
-            //Log.i(TAG, "parse set after  " + ((System.nanoTime() - start) / 1000));
-        }
+        EntityMapper.of(table, c).inject(c, entity);
     }
 
     public static int getFieldClassType(Field f) {
@@ -125,6 +125,23 @@ public class FieldUtil {
         return fieldList;
     }
 
+    /**
+     * 获取类(或其父类)中声明的域
+     *
+     * @param declaringClass 声明该域的类名，为类自身或其父类
+     */
+    public static Field getDeclaredField(Class<?> claxx, String declaringClass, String name)
+            throws NoSuchFieldException {
+        Class<?> c = claxx;
+        while (c != null && !c.getName().equals(declaringClass)) {
+            c = c.getSuperclass();
+        }
+        if (c == null) {
+            throw new NoSuchFieldException(declaringClass + "." + name);
+        }
+        return c.getDeclaredField(name);
+    }
+
     public static void setNumber(Object o, Field field, long n) throws IllegalAccessException {
         field.setAccessible(true);
         Class claxx = field.getType();